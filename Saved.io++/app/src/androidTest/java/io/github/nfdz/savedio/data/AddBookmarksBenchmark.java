@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2017 Noe Fernandez
+ */
+package io.github.nfdz.savedio.data;
+
+import android.os.SystemClock;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.github.nfdz.savedio.Callbacks;
+import io.github.nfdz.savedio.model.Bookmark;
+import io.github.nfdz.savedio.model.BookmarkList;
+import io.realm.Realm;
+import io.realm.RealmConfiguration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Benchmark of bulk bookmark inserts (RealmUtils.addBookmarks) against one insert by bookmark
+ * (RealmUtils.addBookmark). It only measures the realm write, bookmarks are still created in
+ * saved.io one by one before it (see TasksUtils.createBookmarks). Async transactions need a
+ * looper, so they are started in main thread. It only reports times, so it is ignored by default
+ * and it has to be run on demand in a device.
+ */
+@Ignore("Benchmark, it is run on demand")
+@RunWith(AndroidJUnit4.class)
+public class AddBookmarksBenchmark {
+
+    private static final String TAG = "AddBookmarksBenchmark";
+    private static final int BOOKMARKS = 1000;
+    private static final long TIMEOUT_SECONDS = 120;
+
+    private RealmConfiguration mConfig;
+    private Realm mRealm;
+
+    private interface Insert {
+        void start(Realm realm, List<Bookmark> bookmarks, CountDownLatch done, AtomicInteger errors);
+    }
+
+    @After
+    public void tearDown() {
+        closeRealm();
+    }
+
+    private void openRealm(String name) {
+        mConfig = BenchmarkBookmarks.createConfiguration(name);
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mRealm = Realm.getInstance(mConfig);
+            }
+        });
+    }
+
+    private void closeRealm() {
+        if (mRealm == null) return;
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mRealm.close();
+                mRealm = null;
+            }
+        });
+        Realm.deleteRealm(mConfig);
+    }
+
+    /**
+     * Inserts bookmarks in a new realm file and checks that all of them and their lists were
+     * written.
+     * @return duration in milliseconds.
+     */
+    private long measure(String name, final int pendingCallbacks, final Insert insert) throws InterruptedException {
+        openRealm(name);
+        final List<Bookmark> bookmarks = BenchmarkBookmarks.create(BOOKMARKS, 1);
+        final CountDownLatch done = new CountDownLatch(pendingCallbacks);
+        final AtomicInteger errors = new AtomicInteger(0);
+        final long[] start = new long[1];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                start[0] = SystemClock.elapsedRealtime();
+                insert.start(mRealm, bookmarks, done, errors);
+            }
+        });
+        assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        long duration = SystemClock.elapsedRealtime() - start[0];
+        assertEquals(0, errors.get());
+        Realm realm = Realm.getInstance(mConfig);
+        try {
+            assertEquals(BOOKMARKS, realm.where(Bookmark.class).count());
+            for (int i = 0; i < BenchmarkBookmarks.getListCount(); i++) {
+                String listName = BenchmarkBookmarks.getList(i);
+                if (listName.isEmpty()) continue;
+                BookmarkList list = realm.where(BookmarkList.class)
+                        .equalTo(BookmarkList.FIELD_LIST_NAME, listName)
+                        .findFirst();
+                assertEquals(BOOKMARKS / BenchmarkBookmarks.getListCount() + (i < BOOKMARKS % BenchmarkBookmarks.getListCount() ? 1 : 0),
+                        list.getBookmarkCount());
+            }
+        } finally {
+            realm.close();
+        }
+        closeRealm();
+        return duration;
+    }
+
+    @Test
+    public void compareBulkAndSingleInserts() throws InterruptedException {
+        long single = measure("add-single-benchmark.realm", BOOKMARKS, new Insert() {
+            @Override
+            public void start(Realm realm, List<Bookmark> bookmarks, final CountDownLatch done, final AtomicInteger errors) {
+                for (Bookmark bookmark : bookmarks) {
+                    RealmUtils.addBookmark(realm, bookmark, new Callbacks.OperationCallback<Void>() {
+                        @Override
+                        public void onSuccess(Void result) {
+                            done.countDown();
+                        }
+                        @Override
+                        public void onError(String msg, Throwable th) {
+                            Log.e(TAG, msg, th);
+                            errors.incrementAndGet();
+                            done.countDown();
+                        }
+                    });
+                }
+            }
+        });
+        long bulk = measure("add-bulk-benchmark.realm", 1, new Insert() {
+            @Override
+            public void start(Realm realm, List<Bookmark> bookmarks, final CountDownLatch done, final AtomicInteger errors) {
+                RealmUtils.addBookmarks(realm, bookmarks, new Callbacks.OperationCallback<List<Boolean>>() {
+                    @Override
+                    public void onSuccess(List<Boolean> results) {
+                        for (Boolean added : results) {
+                            if (!added) errors.incrementAndGet();
+                        }
+                        done.countDown();
+                    }
+                    @Override
+                    public void onError(String msg, Throwable th) {
+                        Log.e(TAG, msg, th);
+                        errors.incrementAndGet();
+                        done.countDown();
+                    }
+                });
+            }
+        });
+        Log.i(TAG, "Inserted " + BOOKMARKS + " bookmarks in " + single + " ms one by one and in " + bulk + " ms with addBookmarks.");
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2017 Noe Fernandez
+ */
+package io.github.nfdz.savedio.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import io.github.nfdz.savedio.model.Bookmark;
+import io.realm.Realm;
+import io.realm.RealmConfiguration;
+
+/**
+ * This class creates the realm files and bookmarks of benchmarks. Benchmarks use their own realm
+ * file, so application data is never touched.
+ */
+class BenchmarkBookmarks {
+
+    private static final String[] LISTS = { "news", "recipes", "work", "music", "travel", "" };
+    private static final String[] WORDS = {
+            "android", "realm", "kotlin", "pasta", "guitar", "beach", "release", "notes", "video",
+            "design", "weekly", "tutorial", "review", "mountain", "coffee", "budget", "garden"
+    };
+
+    /**
+     * Creates the configuration of an empty realm file with application schema.
+     * @param name realm file name.
+     * @return RealmConfiguration
+     */
+    static RealmConfiguration createConfiguration(String name) {
+        RealmConfiguration config = new RealmConfiguration.Builder()
+                .name(name)
+                .schemaVersion(SchemaMigration.SCHEMA_VERSION)
+                .migration(new SchemaMigration())
+                .build();
+        Realm.deleteRealm(config);
+        return config;
+    }
+
+    /**
+     * Creates unmanaged bookmarks with random titles, lists and favorite flags.
+     * @param count
+     * @param seed
+     * @return list of bookmarks.
+     */
+    static List<Bookmark> create(int count, long seed) {
+        Random random = new Random(seed);
+        List<Bookmark> bookmarks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String word = WORDS[random.nextInt(WORDS.length)];
+            Bookmark bookmark = new Bookmark();
+            bookmark.setId("benchmark-" + seed + "-" + i);
+            bookmark.setTitle(word + " " + WORDS[random.nextInt(WORDS.length)] + " " + i);
+            bookmark.setUrl("https://" + word + ".example.com/" + i);
+            bookmark.setListName(getList(i));
+            bookmark.setFavorite(random.nextInt(20) == 0);
+            bookmark.setClickCounter(random.nextInt(100));
+            bookmarks.add(bookmark);
+        }
+        return bookmarks;
+    }
+
+    /**
+     * Returns the list name of the bookmark created in given position.
+     * @param position
+     * @return list name, it could be empty (no list).
+     */
+    static String getList(int position) {
+        return LISTS[position % LISTS.length];
+    }
+
+    static int getListCount() {
+        return LISTS.length;
+    }
+}
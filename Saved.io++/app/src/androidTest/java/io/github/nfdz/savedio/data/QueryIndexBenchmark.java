@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2017 Noe Fernandez
+ */
+package io.github.nfdz.savedio.data;
+
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+
+import io.github.nfdz.savedio.model.Bookmark;
+import io.realm.DynamicRealm;
+import io.realm.Realm;
+import io.realm.RealmConfiguration;
+import io.realm.RealmObjectSchema;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Benchmark of the hot bookmark queries with and without the indexes of schema. The same realm
+ * file is queried before and after removing the indexes, so only indexes change. It only reports
+ * times, so it is ignored by default and it has to be run on demand in a device.
+ */
+@Ignore("Benchmark, it is run on demand")
+@RunWith(AndroidJUnit4.class)
+public class QueryIndexBenchmark {
+
+    private static final String TAG = "QueryIndexBenchmark";
+    private static final String BOOKMARK_CLASS = "Bookmark";
+    private static final int BOOKMARKS = 50000;
+    private static final int REPETITIONS = 50;
+    private static final int WARMUP_REPETITIONS = 5;
+    private static final String[] INDEXED_FIELDS = { Bookmark.FIELD_LIST, Bookmark.FIELD_FAVORITE };
+
+    private RealmConfiguration mConfig;
+    private DynamicRealm mRealm;
+
+    @Before
+    public void setUp() {
+        mConfig = BenchmarkBookmarks.createConfiguration("query-index-benchmark.realm");
+        final List<Bookmark> bookmarks = BenchmarkBookmarks.create(BOOKMARKS, 2);
+        Realm realm = Realm.getInstance(mConfig);
+        try {
+            realm.executeTransaction(new Realm.Transaction() {
+                @Override
+                public void execute(Realm realm) {
+                    realm.copyToRealm(bookmarks);
+                }
+            });
+        } finally {
+            realm.close();
+        }
+        mRealm = DynamicRealm.getInstance(mConfig);
+    }
+
+    @After
+    public void tearDown() {
+        mRealm.close();
+        Realm.deleteRealm(mConfig);
+    }
+
+    private long queryList() {
+        return mRealm.where(BOOKMARK_CLASS)
+                .equalTo(Bookmark.FIELD_DELETED, Bookmark.NOT_DELETED)
+                .equalTo(Bookmark.FIELD_LIST, BenchmarkBookmarks.getList(0))
+                .count();
+    }
+
+    private long queryFavorites() {
+        return mRealm.where(BOOKMARK_CLASS)
+                .equalTo(Bookmark.FIELD_FAVORITE, true)
+                .count();
+    }
+
+    /**
+     * Measures list and favorite queries.
+     * @return average durations in microseconds of list and favorite queries.
+     */
+    private long[] measure(long expectedInList, long expectedFavorites) {
+        for (int i = 0; i < WARMUP_REPETITIONS; i++) {
+            queryList();
+            queryFavorites();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < REPETITIONS; i++) {
+            assertEquals(expectedInList, queryList());
+        }
+        long list = (System.nanoTime() - start) / REPETITIONS / 1000;
+        start = System.nanoTime();
+        for (int i = 0; i < REPETITIONS; i++) {
+            assertEquals(expectedFavorites, queryFavorites());
+        }
+        long favorites = (System.nanoTime() - start) / REPETITIONS / 1000;
+        return new long[] { list, favorites };
+    }
+
+    private void setIndexes(boolean indexed) {
+        mRealm.beginTransaction();
+        RealmObjectSchema schema = mRealm.getSchema().get(BOOKMARK_CLASS);
+        for (String field : INDEXED_FIELDS) {
+            if (indexed && !schema.hasIndex(field)) {
+                schema.addIndex(field);
+            } else if (!indexed && schema.hasIndex(field)) {
+                schema.removeIndex(field);
+            }
+        }
+        mRealm.commitTransaction();
+    }
+
+    @Test
+    public void compareIndexedAndUnindexedQueries() {
+        long expectedInList = queryList();
+        long expectedFavorites = queryFavorites();
+        long[] indexed = measure(expectedInList, expectedFavorites);
+        setIndexes(false);
+        long[] unindexed = measure(expectedInList, expectedFavorites);
+        // schema of the file is restored, so it could be opened with typed realm again
+        setIndexes(true);
+        Log.i(TAG, "Queries of " + BOOKMARKS + " bookmarks. List: " + indexed[0] + " us indexed, " +
+                unindexed[0] + " us unindexed. Favorites: " + indexed[1] + " us indexed, " +
+                unindexed[1] + " us unindexed.");
+    }
+}
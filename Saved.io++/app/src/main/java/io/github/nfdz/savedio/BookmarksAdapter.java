@@ -8,8 +8,8 @@ import android.graphics.drawable.Drawable;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.v4.content.ContextCompat;
+import android.support.v7.util.DiffUtil;
 import android.support.v7.widget.RecyclerView;
-import android.text.TextUtils;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -18,40 +18,31 @@ import android.widget.TextView;
 
 import com.squareup.picasso.Picasso;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.List;
-
-import io.github.nfdz.savedio.model.Bookmark;
-import io.github.nfdz.savedio.utils.URLUtils;
-import io.realm.RealmChangeListener;
-import io.realm.RealmResults;
+import io.github.nfdz.savedio.data.BookmarkWriteBuffer;
+import io.github.nfdz.savedio.model.BookmarkItem;
+import io.github.nfdz.savedio.model.BookmarkRows;
 
 /**
- * This class is a realm recycler view adapter and manage the creation and binding of bookmark UI items.
+ * This class is a recycler view adapter and manage the creation and binding of bookmark UI items.
+ * Its data is an immutable snapshot prepared in background (see BookmarkLoader). Items are only
+ * created for the rows that are bound, and they have stable IDs, so rows are reused when data
+ * changes.
  */
 public class BookmarksAdapter extends RecyclerView.Adapter<BookmarksAdapter.BookmarksViewHolder> {
 
-    public static final String NO_FILTER = null;
-
     private final Context mContext;
     private final BookmarkOnClickHandler mClickHandler;
-    private final DataChangesListener mChangesListener;
-    private final List<Bookmark> mSortedData;
-    private final List<Bookmark> mFilteredData;
 
-    private RealmResults<Bookmark> mData;
-    private Comparator<Bookmark> mComparator;
-    private String mFilter;
+    /** Sorted and filtered data, it is already prepared by loader */
+    private BookmarkRows mData = BookmarkRows.EMPTY;
 
     /**
      * The interface to be implemented to receive on click events.
      */
     public interface BookmarkOnClickHandler {
-        void onFavoriteClick(Bookmark bookmark);
-        void onBookmarkClick(Bookmark bookmark);
-        void onLongBookmarkClick(Bookmark bookmark);
+        void onFavoriteClick(BookmarkItem bookmark);
+        void onBookmarkClick(BookmarkItem bookmark);
+        void onLongBookmarkClick(BookmarkItem bookmark);
     }
 
     /**
@@ -63,58 +54,49 @@ public class BookmarksAdapter extends RecyclerView.Adapter<BookmarksAdapter.Book
                             @Nullable BookmarkOnClickHandler clickHandler) {
         mContext = context;
         mClickHandler = clickHandler;
-        mSortedData = new ArrayList<>();
-        mFilteredData = new ArrayList<>();
-        mChangesListener = new DataChangesListener();
-        mFilter = NO_FILTER;
-    }
-
-    public void swapData(RealmResults<Bookmark> data) {
-        if (mData != null) mData.removeChangeListener(mChangesListener);
-        mSortedData.clear();
-        mData = data;
-        if (mData != null) {
-            mData.addChangeListener(mChangesListener);
-            mSortedData.addAll(mData);
-            sort();
-            filter();
-        }
-        notifyDataSetChanged();
+        setHasStableIds(true);
     }
 
-    private void sort() {
-        // TODO: perform this in a background thread
-        if (mComparator != null) Collections.sort(mSortedData, mComparator);
+    /**
+     * Returns adapter data.
+     * @return immutable snapshot of sorted bookmarks.
+     */
+    public BookmarkRows getData() {
+        return mData;
     }
 
-    private void filter() {
-        mFilteredData.clear();
-        if (mFilter != NO_FILTER) {
-            for (Bookmark bm : mSortedData) {
-                if (bm.getTitle().toLowerCase().contains(mFilter)) {
-                    mFilteredData.add(bm);
+    /**
+     * Swaps adapter data.
+     * @param data immutable snapshot of sorted bookmarks.
+     * @param diff differences between current data and new data, if it is null all items are
+     *             considered changed.
+     */
+    public void swapData(@NonNull BookmarkRows data, @Nullable DiffUtil.DiffResult diff) {
+        BookmarkRows oldData = mData;
+        mData = data;
+        if (diff == null) {
+            notifyDataSetChanged();
+            return;
+        }
+        diff.dispatchUpdatesTo(this);
+        // last item has no separator, so old and new last items have to be bound again
+        if (!oldData.isEmpty() && !data.isEmpty()) {
+            long oldLastId = oldData.getStableId(oldData.size() - 1);
+            long newLastId = data.getStableId(data.size() - 1);
+            if (oldLastId != newLastId) {
+                notifyItemChanged(data.size() - 1);
+                for (int i = data.size() - 2; i >= 0; i--) {
+                    if (data.getStableId(i) == oldLastId) {
+                        notifyItemChanged(i);
+                        break;
+                    }
                 }
             }
-        } else {
-            mFilteredData.addAll(mSortedData);
         }
     }
 
-    public void setComparator(Comparator<Bookmark> comparator) {
-        mComparator = comparator;
-        sort();
-        filter();
-        notifyDataSetChanged();
-    }
-
-    public void setFilter(String filter) {
-        mFilter = TextUtils.isEmpty(filter) ? NO_FILTER : filter.toLowerCase();
-        filter();
-        notifyDataSetChanged();
-    }
-
-    public String getFilter() {
-        return mFilter;
+    public BookmarkItem getItem(int position) {
+        return mData.getItem(position);
     }
 
     @Override
@@ -128,14 +110,15 @@ public class BookmarksAdapter extends RecyclerView.Adapter<BookmarksAdapter.Book
 
     @Override
     public void onBindViewHolder(BookmarksViewHolder holder, int position) {
-        Bookmark bookmark = mFilteredData.get(position);
+        BookmarkItem bookmark = getItem(position);
         holder.mBookmarkName.setText(bookmark.getTitle());
-        Drawable favoriteDrawable = bookmark.isFavorite() ?
+        boolean isFavorite = BookmarkWriteBuffer.getInstance(mContext)
+                .isFavorite(bookmark.getId(), bookmark.isFavorite());
+        Drawable favoriteDrawable = isFavorite ?
                 ContextCompat.getDrawable(mContext, R.drawable.ic_favorite_on)
               : ContextCompat.getDrawable(mContext, R.drawable.ic_favorite_off);
         holder.mFavoriteButton.setImageDrawable(favoriteDrawable);
-        String url = URLUtils.processURL(bookmark.getUrl());
-        String faviconPath = URLUtils.getFaviconPath(url);
+        String faviconPath = bookmark.getFaviconPath();
         // add no poster art meanwhile Picasso is loading the poster
         Drawable noFavicon = ContextCompat.getDrawable(mContext, R.drawable.art_no_favicon);
         if (faviconPath != null) {
@@ -152,19 +135,13 @@ public class BookmarksAdapter extends RecyclerView.Adapter<BookmarksAdapter.Book
     }
 
     @Override
-    public int getItemCount() {
-        return mFilteredData.size();
+    public long getItemId(int position) {
+        return mData.getStableId(position);
     }
 
-    private class DataChangesListener implements RealmChangeListener<RealmResults<Bookmark>> {
-        @Override
-        public void onChange(RealmResults<Bookmark> element) {
-            mSortedData.clear();
-            mSortedData.addAll(element);
-            sort();
-            filter();
-            notifyDataSetChanged();
-        }
+    @Override
+    public int getItemCount() {
+        return mData.size();
     }
 
     /**
@@ -189,8 +166,10 @@ public class BookmarksAdapter extends RecyclerView.Adapter<BookmarksAdapter.Book
                 @Override
                 public void onClick(View v) {
                     int adapterPosition = getAdapterPosition();
-                    Bookmark bookmark = mFilteredData.get(adapterPosition);
+                    BookmarkItem bookmark = getItem(adapterPosition);
                     if (mClickHandler != null) mClickHandler.onFavoriteClick(bookmark);
+                    // favorite flag could be buffered, so it will not be notified by realm yet
+                    notifyItemChanged(adapterPosition);
                 }
             });
 
@@ -198,7 +177,7 @@ public class BookmarksAdapter extends RecyclerView.Adapter<BookmarksAdapter.Book
                 @Override
                 public void onClick(View v) {
                     int adapterPosition = getAdapterPosition();
-                    Bookmark bookmark = mFilteredData.get(adapterPosition);
+                    BookmarkItem bookmark = getItem(adapterPosition);
                     if (mClickHandler != null) mClickHandler.onBookmarkClick(bookmark);
                 }
             });
@@ -207,7 +186,7 @@ public class BookmarksAdapter extends RecyclerView.Adapter<BookmarksAdapter.Book
                 @Override
                 public boolean onLongClick(View v) {
                     int adapterPosition = getAdapterPosition();
-                    Bookmark bookmark = mFilteredData.get(adapterPosition);
+                    BookmarkItem bookmark = getItem(adapterPosition);
                     if (mClickHandler != null) mClickHandler.onLongBookmarkClick(bookmark);
                     return true;
                 }
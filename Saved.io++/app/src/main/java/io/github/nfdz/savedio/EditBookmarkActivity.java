@@ -24,7 +24,8 @@ import java.util.List;
 import butterknife.BindView;
 import butterknife.ButterKnife;
 import butterknife.OnClick;
-import io.github.nfdz.savedio.data.RealmUtils;
+import io.github.nfdz.savedio.data.RealmProvider;
+import io.github.nfdz.savedio.data.RealmReadUtils;
 import io.github.nfdz.savedio.model.Bookmark;
 import io.github.nfdz.savedio.utils.BookmarkFormUtils;
 import io.github.nfdz.savedio.utils.TasksUtils;
@@ -34,7 +35,7 @@ import timber.log.Timber;
 
 /**
  * This activity shows bookmark layout form filled with given bookmark (in intent). If user
- * clicks edit button, it will remove old bookmark and create a new one.
+ * clicks edit button, it will update the bookmark with modified fields.
  */
 public class EditBookmarkActivity extends AppCompatActivity {
 
@@ -73,8 +74,7 @@ public class EditBookmarkActivity extends AppCompatActivity {
         ButterKnife.bind(this);
         setSupportActionBar(mToolbar);
         ToolbarUtils.setUpActionBar(getSupportActionBar());
-        Realm.init(this);
-        mRealm = Realm.getDefaultInstance();
+        mRealm = RealmProvider.open();
 
         // extract bookmark ID from intent
         if (getIntent() != null && getIntent().hasExtra(BOOKMARK_ID_KEY)) {
@@ -118,7 +118,7 @@ public class EditBookmarkActivity extends AppCompatActivity {
     protected void onDestroy() {
         super.onDestroy();
         mBookmarkUrl.removeTextChangedListener(mUrlValidator);
-        mRealm.close();
+        RealmProvider.close(mRealm);
     }
 
     private void showLoading() {
@@ -136,7 +136,7 @@ public class EditBookmarkActivity extends AppCompatActivity {
      * it is done.
      */
     private void retrieveAvailableLists(final boolean wasEdited, final String lastSelection) {
-        RealmUtils.retrieveListNames(mRealm, new Callbacks.OperationCallback<List<String>>() {
+        RealmReadUtils.retrieveListNames(new Callbacks.OperationCallback<List<String>>() {
             @Override
             public void onSuccess(List<String> result) {
                 mAvailableLists.addAll(result);
@@ -220,30 +220,14 @@ public class EditBookmarkActivity extends AppCompatActivity {
         if (TextUtils.isEmpty(url)) {
             Timber.e("URL is empty when edit button was clicked.");
         } else {
-            TasksUtils.deleteBookmark(this,
+            TasksUtils.editBookmark(this,
                     mRealm,
                     mBookmarkId,
-                    new Callbacks.OperationCallback<Bookmark>() {
+                    editedBookmark,
+                    new Callbacks.OperationCallback<Void>() {
                         @Override
-                        public void onSuccess(Bookmark removed) {
-                            TasksUtils.createBookmark(EditBookmarkActivity.this,
-                                    mRealm,
-                                    editedBookmark,
-                                    new Callbacks.OperationCallback<Void>() {
-                                        @Override
-                                        public void onSuccess(Void v) {
-                                            finish();
-                                        }
-                                        @Override
-                                        public void onError(String error, Throwable th) {
-                                            String msg = "There was an error editing bookmark: " + editedBookmark + ". " + error;
-                                            Timber.e(th, msg);
-                                            showContent();
-                                            Toast.makeText(EditBookmarkActivity.this,
-                                                    R.string.edit_bookmark_error,
-                                                    Toast.LENGTH_LONG).show();
-                                        }
-                                    });
+                        public void onSuccess(Void v) {
+                            finish();
                         }
                         @Override
                         public void onError(String error, Throwable th) {
@@ -254,7 +238,7 @@ public class EditBookmarkActivity extends AppCompatActivity {
                                     R.string.edit_bookmark_error,
                                     Toast.LENGTH_LONG).show();
                         }
-            });
+                    });
         }
     }
 }
@@ -10,27 +10,57 @@ import android.support.annotation.Nullable;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.BaseAdapter;
 import android.widget.TextView;
 
+import java.util.Collections;
+import java.util.List;
+
 import io.github.nfdz.savedio.model.BookmarkList;
-import io.realm.OrderedRealmCollection;
-import io.realm.RealmBaseAdapter;
 
 /**
- * This class is a realm adapter and manage the creation and binding of list UI items.
+ * This class is an adapter and manage the creation and binding of list UI items. Its data is an
+ * unmanaged copy of lists, so it is only refreshed when swapData is invoked and not with every
+ * realm change.
  */
-public class ListsAdapter extends RealmBaseAdapter<BookmarkList> {
+public class ListsAdapter extends BaseAdapter {
 
     private final Context mContext;
 
+    private List<BookmarkList> mData = Collections.emptyList();
+
     /**
      * Constructor.
      * @param context
      * @param data
      */
-    public ListsAdapter(@NonNull Context context, @Nullable OrderedRealmCollection<BookmarkList> data) {
-        super(context, data);
+    public ListsAdapter(@NonNull Context context, @Nullable List<BookmarkList> data) {
         mContext = context;
+        if (data != null) mData = data;
+    }
+
+    /**
+     * Swaps adapter data.
+     * @param data unmanaged lists.
+     */
+    public void swapData(@NonNull List<BookmarkList> data) {
+        mData = data;
+        notifyDataSetChanged();
+    }
+
+    @Override
+    public int getCount() {
+        return mData.size();
+    }
+
+    @Override
+    public BookmarkList getItem(int position) {
+        return mData.get(position);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return position;
     }
 
     @Override
@@ -44,7 +74,11 @@ public class ListsAdapter extends RealmBaseAdapter<BookmarkList> {
             boolean shouldAttachToParent = false;
             view = inflater.inflate(layoutId, parent, shouldAttachToParent);
         }
-        ((TextView)view).setText(getItem(position).getListName());
+        BookmarkList list = getItem(position);
+        String text = String.format(mContext.getString(R.string.main_menu_list_format),
+                list.getListName(),
+                list.getBookmarkCount());
+        ((TextView)view).setText(text);
         return view;
     }
 }
@@ -12,6 +12,8 @@ import android.content.pm.PackageManager;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.SystemClock;
 import android.support.design.widget.Snackbar;
 import android.support.v4.view.GravityCompat;
 import android.support.v4.widget.DrawerLayout;
@@ -45,24 +47,34 @@ import android.widget.Toast;
 import com.miguelcatalan.materialsearchview.MaterialSearchView;
 
 import java.util.List;
+import java.util.concurrent.Future;
 
 import butterknife.BindView;
 import butterknife.ButterKnife;
 import butterknife.OnClick;
+import io.github.nfdz.savedio.data.BookmarkArchive;
+import io.github.nfdz.savedio.data.BookmarkLoader;
+import io.github.nfdz.savedio.data.BookmarkWriteBuffer;
 import io.github.nfdz.savedio.data.PreferencesUtils;
+import io.github.nfdz.savedio.data.RealmProvider;
+import io.github.nfdz.savedio.data.RealmReadUtils;
 import io.github.nfdz.savedio.data.RealmUtils;
+import io.github.nfdz.savedio.data.SearchIndex;
+import io.github.nfdz.savedio.data.SearchSession;
 import io.github.nfdz.savedio.model.Bookmark;
-import io.github.nfdz.savedio.model.BookmarkDateComparator;
-import io.github.nfdz.savedio.model.BookmarkDateLastComparator;
+import io.github.nfdz.savedio.model.BookmarkItem;
 import io.github.nfdz.savedio.model.BookmarkList;
-import io.github.nfdz.savedio.model.BookmarkTitleComparator;
+import io.github.nfdz.savedio.model.BookmarkRows;
+import io.github.nfdz.savedio.model.BookmarkSort;
 import io.github.nfdz.savedio.model.SyncResult;
 import io.github.nfdz.savedio.sync.SyncUtils;
+import io.github.nfdz.savedio.utils.ChangeThrottle;
+import io.github.nfdz.savedio.utils.SearchUtils;
 import io.github.nfdz.savedio.utils.TasksUtils;
 import io.github.nfdz.savedio.utils.ToolbarUtils;
-import io.github.nfdz.savedio.utils.URLUtils;
 import io.realm.Realm;
 import io.realm.RealmChangeListener;
+import io.realm.RealmQuery;
 import io.realm.RealmResults;
 import timber.log.Timber;
 
@@ -81,6 +93,7 @@ public class MainActivity extends AppCompatActivity implements
     private static final int FAVORITE_CONTENT = 1;
     private static final int LIST_CONTENT = 2;
     private static final String NO_LIST = "";
+    private static final String NO_FILTER = "";
 
     /** Key of the selected list in intent extra data and saved instance state */
     public static final String LIST_KEY = "selected-list";
@@ -91,6 +104,15 @@ public class MainActivity extends AppCompatActivity implements
     /** Key of the bookmark recycler view position in saved instance state */
     private static final String LIST_POSITION_KEY = "bookmark-list-position";
 
+    /** Time without typing that has to pass before a search is performed */
+    private static final long SEARCH_DEBOUNCE_MILLIS = 150;
+
+    /** Searches shorter than this do not look for similar bookmarks when nothing matches */
+    private static final int SIMILAR_SEARCH_MIN_LENGTH = 3;
+
+    /** Minimum time between two content refreshes caused by realm changes */
+    private static final long REFRESH_INTERVAL_MILLIS = 300;
+
     @BindView(R.id.toolbar) Toolbar mToolbar;
     @BindView(R.id.toolbar_logo) ImageView mLogo;
     @BindView(R.id.swipe_refresh_main) SwipeRefreshLayout mSwipeRefresh;
@@ -107,11 +129,39 @@ public class MainActivity extends AppCompatActivity implements
     private BookmarksAdapter mBookmarksAdapter;
     private int mSelectedContent;
     private String mSelectedList;
+    private BookmarkSort mSort = BookmarkSort.TITLE;
+    /** Folded search filter */
+    private String mFilter = NO_FILTER;
     private ListsAdapter mListsAdaper;
     private Realm mRealm;
     private LinearLayoutManager mLayoutManager;
     private int mLastPosition = RecyclerView.NO_POSITION;
     private SyncResultListener mResultListener;
+    private BookmarkLoader mLoader = new BookmarkLoader();
+    private SearchSession mSearchSession = new SearchSession();
+    private Handler mSearchHandler = new Handler();
+    private ChangeThrottle mRefreshThrottle = new ChangeThrottle(REFRESH_INTERVAL_MILLIS, new Runnable() {
+        @Override
+        public void run() {
+            // reload content in background with the new data
+            updateLists();
+            mSearchSession.clear();
+            loadBookmarks(true);
+        }
+    });
+    /** Lists read that is being performed in background, it is null if there is not any */
+    private Future<?> mPendingLists;
+    /** Number of the last lists read, results of previous reads are discarded */
+    private int mListsReadCount = 0;
+    private RealmChangeListener<Realm> mRealmListener = new RealmChangeListener<Realm>() {
+        @Override
+        public void onChange(Realm realm) {
+            // index is not used until it is updated
+            SearchIndex.getInstance().update();
+            // bulk writes (sync, import) commit many times in a row
+            mRefreshThrottle.onChange();
+        }
+    };
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -121,9 +171,7 @@ public class MainActivity extends AppCompatActivity implements
         ButterKnife.bind(this);
         setSupportActionBar(mToolbar);
         ToolbarUtils.setUpActionBar(getSupportActionBar());
-        Realm.init(this);
-
-        mRealm = Realm.getDefaultInstance();
+        mRealm = RealmProvider.open();
         if (savedInstanceState != null) {
             mSelectedContent = savedInstanceState.getInt(CONTENT_KEY, ALL_CONTENT);
             mSelectedList = savedInstanceState.getString(LIST_KEY, NO_LIST);
@@ -158,6 +206,7 @@ public class MainActivity extends AppCompatActivity implements
         mSearchView.setOnQueryTextListener(new SearchListener());
 
         SyncUtils.initialize(this, mRealm);
+        BookmarkArchive.initialize(this);
 
         // check if it has to show introduction activity
         PreferencesUtils.retrieveFinishedIntro(this, new Callbacks.FinishCallback<Boolean>() {
@@ -171,9 +220,34 @@ public class MainActivity extends AppCompatActivity implements
         });
     }
 
+    /**
+     * Reads an unmanaged copy of lists in background and swaps it in navigation menu when it is
+     * loaded. A pending read is discarded.
+     */
     private void updateLists() {
-        RealmResults<BookmarkList> bookmarkLists = mRealm.where(BookmarkList.class).findAll();
-        mListsAdaper.updateData(bookmarkLists);
+        cancelListsUpdate();
+        final int readCount = mListsReadCount;
+        mPendingLists = RealmReadUtils.retrieveLists(new Callbacks.OperationCallback<List<BookmarkList>>() {
+            @Override
+            public void onSuccess(List<BookmarkList> lists) {
+                if (readCount != mListsReadCount) return;
+                mPendingLists = null;
+                mListsAdaper.swapData(lists);
+            }
+            @Override
+            public void onError(String msg, Throwable th) {
+                Timber.e(th, msg);
+            }
+        });
+    }
+
+    private void cancelListsUpdate() {
+        // a read that already finished could have posted its result
+        mListsReadCount++;
+        if (mPendingLists != null) {
+            mPendingLists.cancel(false);
+            mPendingLists = null;
+        }
     }
 
     @Override
@@ -187,7 +261,10 @@ public class MainActivity extends AppCompatActivity implements
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        mRealm.close();
+        mLoader.cancel();
+        mSearchHandler.removeCallbacksAndMessages(null);
+        Timber.d("Search session stats: " + mSearchSession);
+        RealmProvider.close(mRealm);
     }
 
     @Override
@@ -208,22 +285,43 @@ public class MainActivity extends AppCompatActivity implements
         mResultListener = new SyncResultListener(result);
         mResultListener.register();
 
-        // update adapter comparator with preferences
+        // reload content when data changes
+        mRealm.addChangeListener(mRealmListener);
+        // data could have been changed in background meanwhile
+        SearchIndex.getInstance().update();
+
+        // update sort with preferences
         PreferencesUtils.retrievePreferredSort(this, new Callbacks.FinishCallback<String>() {
             @Override
             public void onFinish(String sort) {
-                updateComparator(sort);
+                mSort = BookmarkSort.fromPreference(MainActivity.this, sort);
                 updateLists();
                 updateInfoLayout();
-                List<Bookmark> bookmarks = updateBookmarks();
+                updateBookmarks();
                 // ensure that there are some bookmarks if a list selected
-                if (mSelectedContent == LIST_CONTENT &&
-                        (bookmarks == null || bookmarks.size() == 0)) {
-                    mSelectedList = NO_LIST;
-                    mSelectedContent = ALL_CONTENT;
-                    updateInfoLayout();
-                    updateBookmarks();
-                }
+                if (mSelectedContent == LIST_CONTENT) ensureSelectedListIsNotEmpty();
+            }
+        });
+    }
+
+    /**
+     * Counts the bookmarks of selected list in background and selects all bookmarks if it is
+     * empty and it is still selected.
+     */
+    private void ensureSelectedListIsNotEmpty() {
+        final String list = mSelectedList;
+        RealmReadUtils.countListBookmarks(list, new Callbacks.OperationCallback<Long>() {
+            @Override
+            public void onSuccess(Long count) {
+                if (count > 0 || mSelectedContent != LIST_CONTENT || !TextUtils.equals(list, mSelectedList)) return;
+                mSelectedList = NO_LIST;
+                mSelectedContent = ALL_CONTENT;
+                updateInfoLayout();
+                updateBookmarks();
+            }
+            @Override
+            public void onError(String msg, Throwable th) {
+                Timber.e(th, msg);
             }
         });
     }
@@ -238,7 +336,13 @@ public class MainActivity extends AppCompatActivity implements
         PreferenceManager.getDefaultSharedPreferences(this)
                 .unregisterOnSharedPreferenceChangeListener(this);
         mResultListener.unregister();
+        mRealm.removeChangeListener(mRealmListener);
+        mRefreshThrottle.cancel();
+        cancelListsUpdate();
+        SearchIndex.getInstance().persist();
+        Timber.d("Realm changes: " + mRefreshThrottle.getChangeCount() + ", suppressed refreshes: " + mRefreshThrottle.getSuppressedCount() + ".");
         mSwipeRefresh.setRefreshing(false);
+        BookmarkWriteBuffer.getInstance(this).flush();
     }
 
     @Override
@@ -265,9 +369,20 @@ public class MainActivity extends AppCompatActivity implements
     }
 
     private class SearchListener implements MaterialSearchView.OnQueryTextListener {
+
+        private String mPendingText;
+        private final Runnable mSearchRunnable = new Runnable() {
+            @Override
+            public void run() {
+                setFilter(mPendingText);
+            }
+        };
+
         @Override
         public boolean onQueryTextSubmit(String query) {
-            // just hide keyboard
+            // search now and hide keyboard
+            mSearchHandler.removeCallbacks(mSearchRunnable);
+            setFilter(query);
             InputMethodManager imm = (InputMethodManager) getSystemService(Context.INPUT_METHOD_SERVICE);
             imm.hideSoftInputFromWindow(mSearchView.getWindowToken(), 0);
             return true;
@@ -276,21 +391,14 @@ public class MainActivity extends AppCompatActivity implements
         @Override
         public boolean onQueryTextChange(String newText) {
             Timber.d("onQueryTextChange=" + newText);
-            mBookmarksAdapter.setFilter(newText);
+            // wait until user stops typing
+            mPendingText = newText;
+            mSearchHandler.removeCallbacks(mSearchRunnable);
+            mSearchHandler.postDelayed(mSearchRunnable, SEARCH_DEBOUNCE_MILLIS);
             return true;
         }
     }
 
-    private void updateComparator(String sort) {
-        if (getString(R.string.pref_sort_date_last_key).equals(sort)) {
-            mBookmarksAdapter.setComparator(new BookmarkDateLastComparator());
-        } else if (getString(R.string.pref_sort_date_old_key).equals(sort)) {
-            mBookmarksAdapter.setComparator(new BookmarkDateComparator());
-        } else {
-            mBookmarksAdapter.setComparator(new BookmarkTitleComparator());
-        }
-    }
-
     /**
      * This methods hides or shows the info layout section depending on the value of
      * selected content.
@@ -351,7 +459,7 @@ public class MainActivity extends AppCompatActivity implements
         } else if (id == R.id.action_search && Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
             // Material search view does not work properly with versions under lollipop:
             // https://github.com/MiguelCatalan/MaterialSearchView/issues
-            boolean isFiltered = !TextUtils.isEmpty(mBookmarksAdapter.getFilter());
+            boolean isFiltered = !TextUtils.isEmpty(mFilter);
             if (!isFiltered) {
                 // ask the filter and set it
                 AlertDialog.Builder builder = new AlertDialog.Builder(this);
@@ -368,7 +476,7 @@ public class MainActivity extends AppCompatActivity implements
                     public void onClick(DialogInterface dialog, int which) {
                         String filter = input.getText().toString();
                         if (!TextUtils.isEmpty(filter)) {
-                            mBookmarksAdapter.setFilter(filter);
+                            setFilter(filter);
                             item.setIcon(R.drawable.ic_search_ongoing);
                         }
                     }
@@ -382,8 +490,9 @@ public class MainActivity extends AppCompatActivity implements
 
                 builder.show();
             } else {
-                // clear current filter
-                mBookmarksAdapter.setFilter(null);
+                // clear current filter and discard pending searches
+                mSearchHandler.removeCallbacksAndMessages(null);
+                setFilter(null);
                 item.setIcon(R.drawable.ic_search);
             }
 
@@ -423,49 +532,134 @@ public class MainActivity extends AppCompatActivity implements
     }
 
     /**
-     * Update the content of recycler view performing a new query in realm.
-     * @return the new data used by adapter, it could be null.
+     * Update the content of recycler view performing a new query in realm. The query is performed
+     * in background and content is hidden until it is loaded.
      */
-    private RealmResults<Bookmark> updateBookmarks() {
+    private void updateBookmarks() {
         showNothing();
-        RealmResults<Bookmark> bookmarks = getBookmarks();
-        mBookmarksAdapter.swapData(bookmarks);
-        if (mLastPosition != RecyclerView.NO_POSITION) {
-            mBookmarksView.scrollToPosition(mLastPosition);
-            mLastPosition = RecyclerView.NO_POSITION;
+        mSearchSession.clear();
+        loadBookmarks(false);
+    }
+
+    /**
+     * Loads the content of recycler view in background depending of the selected content flag,
+     * sort and search filter. Only the last load is shown. Searches reuse the results of recent
+     * searches if they are cached in search session, otherwise search index is used over the
+     * content without filter. If nothing matches a search, similar bookmarks are shown instead.
+     * @param incremental true if only the differences with current content have to be updated.
+     */
+    private void loadBookmarks(boolean incremental) {
+        // sort is not retrieved from preferences yet
+        if (mSort == null) return;
+        final long start = SystemClock.elapsedRealtime();
+        final int content = mSelectedContent;
+        final String list = mSelectedList;
+        final String filter = mFilter;
+        final BookmarkSort sort = mSort;
+        BookmarkRows current = incremental ? mBookmarksAdapter.getData() : null;
+        // session could be cleared before the load finishes, so similar search keeps its source
+        final BookmarkRows unfiltered = mSearchSession.getContent();
+        final Callbacks.FinishCallback<BookmarkLoader.Result> callback = new Callbacks.FinishCallback<BookmarkLoader.Result>() {
+            private boolean mSimilarRequested = false;
+            @Override
+            public void onFinish(BookmarkLoader.Result result) {
+                if (!mSimilarRequested) mSearchSession.put(filter, result.getRows());
+                if (result.getRows().isEmpty() && !mSimilarRequested &&
+                        filter.length() >= SIMILAR_SEARCH_MIN_LENGTH && unfiltered != null) {
+                    // nothing matches, look for similar bookmarks (search could have typos)
+                    mSimilarRequested = true;
+                    mLoader.findSimilar(unfiltered, filter, mBookmarksAdapter.getData(), this);
+                    return;
+                }
+                Timber.d("Bookmarks content loaded in " + (SystemClock.elapsedRealtime() - start) + " ms.");
+                mBookmarksAdapter.swapData(result.getRows(), result.getDiff());
+                if (mLastPosition != RecyclerView.NO_POSITION) {
+                    mBookmarksView.scrollToPosition(mLastPosition);
+                    mLastPosition = RecyclerView.NO_POSITION;
+                }
+                showBookmarks();
+            }
+        };
+
+        BookmarkRows cached = mSearchSession.get(filter);
+        if (cached != null) {
+            mLoader.filter(cached, NO_FILTER, current, callback);
+            return;
+        }
+        BookmarkRows source = mSearchSession.getNarrowingSource(filter);
+        if (source != null) {
+            mLoader.filter(source, filter, current, callback);
+            return;
+        }
+        if (unfiltered != null) {
+            // archive is only searched with long enough searches
+            BookmarkLoader.Query archiveQuery = filter.length() < BookmarkArchive.MIN_SEARCH_LENGTH ? null :
+                    new BookmarkLoader.Query() {
+                        @Override
+                        public RealmResults<Bookmark> findAll(Realm archive) {
+                            return sort.findAllSorted(getBookmarksQuery(archive, content, list)
+                                    .contains(Bookmark.FIELD_SEARCH, filter));
+                        }
+                    };
+            mLoader.search(unfiltered, filter, archiveQuery, current, callback);
+            return;
         }
-        showBookmarks();
-        return bookmarks;
+        // searches are performed over the content without filter, so it is loaded first
+        final boolean incrementalSearch = incremental;
+        final BookmarkWriteBuffer writeBuffer = BookmarkWriteBuffer.getInstance(this);
+        final int flushCount = writeBuffer.getFlushCount();
+        mLoader.load(new BookmarkLoader.Query() {
+            @Override
+            public RealmResults<Bookmark> findAll(Realm realm) {
+                return sort.findAllSorted(getBookmarksQuery(realm, content, list));
+            }
+        }, TextUtils.isEmpty(filter) ? current : null, new Callbacks.FinishCallback<BookmarkLoader.Result>() {
+            @Override
+            public void onFinish(BookmarkLoader.Result result) {
+                // snapshot has the favorite flags flushed before the load
+                writeBuffer.onSnapshotLoaded(flushCount);
+                if (TextUtils.isEmpty(filter)) {
+                    callback.onFinish(result);
+                } else {
+                    mSearchSession.put(NO_FILTER, result.getRows());
+                    loadBookmarks(incrementalSearch);
+                }
+            }
+        });
     }
 
     /**
-     * Perform a query in realm depending of the selected content flag.
-     * @return results of the query, it could be null.
+     * Sets the search filter and updates the content of recycler view with it. The search is
+     * performed in background and results will be shown when they are ready.
+     * @param filter it could be null.
      */
-    private RealmResults<Bookmark> getBookmarks() {
-        RealmResults<Bookmark> result;
-        switch (mSelectedContent) {
+    private void setFilter(String filter) {
+        String foldedFilter = SearchUtils.fold(filter);
+        if (!foldedFilter.equals(mFilter)) {
+            mFilter = foldedFilter;
+            loadBookmarks(true);
+        }
+    }
+
+    /**
+     * Creates a realm query depending of given content flag.
+     * @param realm
+     * @param content
+     * @param list selected list name if content is a list.
+     * @return query.
+     */
+    private static RealmQuery<Bookmark> getBookmarksQuery(Realm realm, int content, String list) {
+        RealmQuery<Bookmark> query = realm.where(Bookmark.class)
+                .equalTo(Bookmark.FIELD_DELETED, Bookmark.NOT_DELETED);
+        switch (content) {
             case FAVORITE_CONTENT:
-                result = mRealm.where(Bookmark.class)
-                        .equalTo(Bookmark.FIELD_FAVORITE, true)
-                        .findAll();
+                query.equalTo(Bookmark.FIELD_FAVORITE, true);
                 break;
             case LIST_CONTENT:
-                BookmarkList list = mRealm.where(BookmarkList.class)
-                        .equalTo(BookmarkList.FIELD_LIST_NAME, mSelectedList)
-                        .findFirst();
-                if (list != null) {
-                    result = list.getBookmarks()
-                            .where()
-                            .findAll();
-                } else {
-                    result = null;
-                }
+                query.equalTo(Bookmark.FIELD_LIST, list);
                 break;
-            default:
-                result = mRealm.where(Bookmark.class).findAll();
         }
-        return result;
+        return query;
     }
 
     /**
@@ -473,74 +667,96 @@ public class MainActivity extends AppCompatActivity implements
      * @param bookmark
      */
     @Override
-    public void onBookmarkClick(final Bookmark bookmark) {
-        RealmUtils.incrementClickCounter(this,
-                mRealm,
-                bookmark.getId(),
-                new Callbacks.OperationCallback<Void>() {
+    public void onBookmarkClick(final BookmarkItem bookmark) {
+        openBookmark(bookmark);
+        withRestoredBookmark(bookmark, new Runnable() {
+            @Override
+            public void run() {
+                BookmarkWriteBuffer.getInstance(MainActivity.this).incrementClickCounter(bookmark.getId());
+            }
+        });
+    }
+
+    /**
+     * Performs given action with given bookmark, archived bookmarks are moved back to main realm
+     * first because actions modify them.
+     * @param bookmark
+     * @param action to be run in main thread.
+     */
+    private void withRestoredBookmark(final BookmarkItem bookmark, final Runnable action) {
+        if (!bookmark.isArchived()) {
+            action.run();
+            return;
+        }
+        BookmarkArchive.restoreAsync(bookmark.getId(), new Callbacks.OperationCallback<Void>() {
             @Override
             public void onSuccess(Void result) {
-                openBookmark();
+                action.run();
             }
             @Override
             public void onError(String msg, Throwable th) {
-                Timber.e(th, "There was an error incrementing bookmark click counter. " + msg);
-                openBookmark();
-            }
-            private void openBookmark() {
-                String url = URLUtils.processURL(bookmark.getUrl());
-                Intent openIntent = new Intent(Intent.ACTION_VIEW, Uri.parse(url));
-                final Intent searchIntent = new Intent(Intent.ACTION_WEB_SEARCH);
-                searchIntent.putExtra(SearchManager.QUERY, url);
-                PackageManager pm = getPackageManager();
-
-                if (openIntent.resolveActivity(pm) != null) {
-                    startActivity(openIntent);
-                } else if (searchIntent.resolveActivity(pm) != null) {
-                    Snackbar.make(mContent,
-                            getString(R.string.main_bookmark_unable_click),
-                            Snackbar.LENGTH_LONG)
-                            .setAction(getString(R.string.main_bookmark_unable_click_search), new View.OnClickListener() {
-                                @Override
-                                public void onClick(View view) {
-                                    startActivity(searchIntent);
-                                }
-                            })
-                            .show();
-                } else {
-                    Snackbar.make(mContent,
-                            getString(R.string.main_bookmark_unable_click),
-                            Snackbar.LENGTH_LONG)
-                            .show();
-                }
+                Timber.e(th, msg);
+                Snackbar.make(mContent,
+                        getString(R.string.main_bookmark_restore_error),
+                        Snackbar.LENGTH_LONG).show();
+                mBookmarksAdapter.notifyDataSetChanged();
             }
         });
     }
 
+    private void openBookmark(BookmarkItem bookmark) {
+        String url = bookmark.getUrl();
+        Intent openIntent = new Intent(Intent.ACTION_VIEW, Uri.parse(url));
+        final Intent searchIntent = new Intent(Intent.ACTION_WEB_SEARCH);
+        searchIntent.putExtra(SearchManager.QUERY, url);
+        PackageManager pm = getPackageManager();
+
+        if (openIntent.resolveActivity(pm) != null) {
+            startActivity(openIntent);
+        } else if (searchIntent.resolveActivity(pm) != null) {
+            Snackbar.make(mContent,
+                    getString(R.string.main_bookmark_unable_click),
+                    Snackbar.LENGTH_LONG)
+                    .setAction(getString(R.string.main_bookmark_unable_click_search), new View.OnClickListener() {
+                        @Override
+                        public void onClick(View view) {
+                            startActivity(searchIntent);
+                        }
+                    })
+                    .show();
+        } else {
+            Snackbar.make(mContent,
+                    getString(R.string.main_bookmark_unable_click),
+                    Snackbar.LENGTH_LONG)
+                    .show();
+        }
+    }
+
     /**
      * This method is invoked by recycler view adapter when user performs a long click in a bookmark.
      * @param bookmark
      */
     @Override
-    public void onLongBookmarkClick(Bookmark bookmark) {
-        Intent editBookmarkIntent = new Intent(this, EditBookmarkActivity.class);
-        editBookmarkIntent.putExtra(EditBookmarkActivity.BOOKMARK_ID_KEY, bookmark.getId());
-        startActivity(editBookmarkIntent);
+    public void onLongBookmarkClick(final BookmarkItem bookmark) {
+        withRestoredBookmark(bookmark, new Runnable() {
+            @Override
+            public void run() {
+                Intent editBookmarkIntent = new Intent(MainActivity.this, EditBookmarkActivity.class);
+                editBookmarkIntent.putExtra(EditBookmarkActivity.BOOKMARK_ID_KEY, bookmark.getId());
+                startActivity(editBookmarkIntent);
+            }
+        });
     }
 
     @Override
-    public void onFavoriteClick(Bookmark bookmark) {
+    public void onFavoriteClick(final BookmarkItem bookmark) {
         if (!PreferencesUtils.getSmartFavoritesFlag(this)) {
-            // toggle favorite flag
-            boolean isFavorite = !bookmark.isFavorite();
-            RealmUtils.setFavorite(this, mRealm, bookmark.getId(), isFavorite, new Callbacks.OperationCallback<Void>() {
-                @Override
-                public void onSuccess(Void result) {
-                    // nothing to do
-                }
+            withRestoredBookmark(bookmark, new Runnable() {
                 @Override
-                public void onError(String msg, Throwable th) {
-                    Timber.e(th, msg);
+                public void run() {
+                    // toggle favorite flag
+                    BookmarkWriteBuffer buffer = BookmarkWriteBuffer.getInstance(MainActivity.this);
+                    buffer.setFavorite(bookmark.getId(), !buffer.isFavorite(bookmark.getId(), bookmark.isFavorite()));
                 }
             });
         }
@@ -585,9 +801,16 @@ public class MainActivity extends AppCompatActivity implements
 
     private class SyncResultListener implements RealmChangeListener<SyncResult> {
         private final SyncResult mResult;
+        private final ChangeThrottle mThrottle;
 
         public SyncResultListener(SyncResult result) {
             mResult = result;
+            mThrottle = new ChangeThrottle(REFRESH_INTERVAL_MILLIS, new Runnable() {
+                @Override
+                public void run() {
+                    showResult();
+                }
+            });
         }
 
         public void register() {
@@ -596,11 +819,17 @@ public class MainActivity extends AppCompatActivity implements
 
         public void unregister() {
             mResult.removeChangeListener(this);
+            mThrottle.cancel();
         }
 
         @Override
         public void onChange(SyncResult result) {
-            String msg = getString(R.string.main_sync_result) + "\n" + result.getMessage();
+            mThrottle.onChange();
+        }
+
+        private void showResult() {
+            if (!mResult.isValid()) return;
+            String msg = getString(R.string.main_sync_result) + "\n" + mResult.getMessage();
             Toast.makeText(MainActivity.this, msg, Toast.LENGTH_LONG).show();
             mSwipeRefresh.setRefreshing(false);
         }
@@ -612,7 +841,8 @@ public class MainActivity extends AppCompatActivity implements
             PreferencesUtils.retrievePreferredSort(this, new Callbacks.FinishCallback<String>() {
                 @Override
                 public void onFinish(String sort) {
-                    updateComparator(sort);
+                    mSort = BookmarkSort.fromPreference(MainActivity.this, sort);
+                    updateBookmarks();
                 }
             });
         } else if (key.equals(getString(R.string.pref_api_key))) {
@@ -642,8 +872,15 @@ public class MainActivity extends AppCompatActivity implements
          */
         @Override
         public void onSwiped(final RecyclerView.ViewHolder viewHolder, int direction) {
-            String bookmarkId = (String) viewHolder.itemView.getTag();
-            deleteBookmark(bookmarkId);
+            final String bookmarkId = (String) viewHolder.itemView.getTag();
+            int position = viewHolder.getAdapterPosition();
+            if (position == RecyclerView.NO_POSITION) return;
+            withRestoredBookmark(mBookmarksAdapter.getItem(position), new Runnable() {
+                @Override
+                public void run() {
+                    deleteBookmark(bookmarkId);
+                }
+            });
         }
     }
 
@@ -651,32 +888,28 @@ public class MainActivity extends AppCompatActivity implements
         TasksUtils.deleteBookmark(this,
                 mRealm,
                 bookmarkId,
-                new Callbacks.OperationCallback<Bookmark>() {
+                new Callbacks.OperationCallback<Void>() {
                     @Override
-                    public void onSuccess(final Bookmark removedBookmark) {
-                        // if bookmark was removed, ensure that selected list is not empty
-                        if (removedBookmark != null) {
-                            if (mSelectedContent == LIST_CONTENT &&
-                                    !TextUtils.isEmpty(mSelectedList)) {
-                                if (mBookmarksAdapter.getItemCount() == 0) {
-                                    mSelectedContent = ALL_CONTENT;
-                                    mSelectedList = NO_LIST;
-                                    updateInfoLayout();
-                                    updateBookmarks();
-                                }
+                    public void onSuccess(Void result) {
+                        // ensure that selected list is not empty
+                        if (mSelectedContent == LIST_CONTENT &&
+                                !TextUtils.isEmpty(mSelectedList)) {
+                            if (mBookmarksAdapter.getItemCount() == 0) {
+                                mSelectedContent = ALL_CONTENT;
+                                mSelectedList = NO_LIST;
+                                updateInfoLayout();
+                                updateBookmarks();
                             }
-                            Snackbar.make(mContent,
-                                    getString(R.string.main_bookmark_deleted),
-                                    Snackbar.LENGTH_LONG)
-                                    .setAction(getString(R.string.main_bookmark_deleted_undo), new View.OnClickListener() {
-                                        @Override
-                                        public void onClick(View view) {
-                                            createBookmark(removedBookmark);
-                                        }
-                                    }).show();
-                        } else {
-                            onError("There is no bookmarks with that ID. ", new Throwable());
                         }
+                        Snackbar.make(mContent,
+                                getString(R.string.main_bookmark_deleted),
+                                Snackbar.LENGTH_LONG)
+                                .setAction(getString(R.string.main_bookmark_deleted_undo), new View.OnClickListener() {
+                                    @Override
+                                    public void onClick(View view) {
+                                        restoreBookmark(bookmarkId);
+                                    }
+                                }).show();
                     }
                     @Override
                     public void onError(String msg, Throwable th) {
@@ -689,10 +922,9 @@ public class MainActivity extends AppCompatActivity implements
                 });
     }
 
-    private void createBookmark(final Bookmark bookmark) {
-        TasksUtils.createBookmark(this,
-                mRealm,
-                bookmark,
+    private void restoreBookmark(final String bookmarkId) {
+        RealmUtils.restoreBookmark(mRealm,
+                bookmarkId,
                 new Callbacks.OperationCallback<Void>() {
                     @Override
                     public void onSuccess(Void v) {
@@ -700,7 +932,7 @@ public class MainActivity extends AppCompatActivity implements
                     }
                     @Override
                     public void onError(String msg, Throwable th) {
-                        Timber.e(th, "There was an error inserting a bookmark: " + bookmark + ". " + msg);
+                        Timber.e(th, "There was an error restoring a bookmark: " + bookmarkId + ". " + msg);
                         Snackbar.make(mContent,
                                 getString(R.string.main_bookmark_deleted_undo_error),
                                 Snackbar.LENGTH_LONG).show();
@@ -5,6 +5,7 @@ package io.github.nfdz.savedio;
 
 import android.content.Intent;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.support.v7.app.AppCompatActivity;
 import android.support.v7.app.AppCompatDelegate;
 import android.support.v7.widget.Toolbar;
@@ -25,8 +26,11 @@ import java.util.List;
 import butterknife.BindView;
 import butterknife.ButterKnife;
 import butterknife.OnClick;
-import io.github.nfdz.savedio.data.RealmUtils;
+import io.github.nfdz.savedio.data.PreferencesUtils;
+import io.github.nfdz.savedio.data.RealmProvider;
+import io.github.nfdz.savedio.data.RealmReadUtils;
 import io.github.nfdz.savedio.model.Bookmark;
+import io.github.nfdz.savedio.sync.api.APIHelper;
 import io.github.nfdz.savedio.utils.BookmarkFormUtils;
 import io.github.nfdz.savedio.utils.TasksUtils;
 import io.github.nfdz.savedio.utils.ToolbarUtils;
@@ -60,16 +64,24 @@ public class NewBookmarkActivity extends AppCompatActivity {
     private List<String> mAvailableLists = new ArrayList<>();
     private TextWatcher mUrlValidator;
 
+    /** Elapsed realtime when activity was opened, used to measure the time until saved */
+    private long mOpenTime;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        mOpenTime = SystemClock.elapsedRealtime();
         AppCompatDelegate.setCompatVectorFromResourcesEnabled(true);
         setContentView(R.layout.activity_new_bookmark);
         ButterKnife.bind(this);
         setSupportActionBar(mToolbar);
         ToolbarUtils.setUpActionBar(getSupportActionBar());
-        Realm.init(this);
-        mRealm = Realm.getDefaultInstance();
+        mRealm = RealmProvider.open();
+
+        // in online mode, open API connection while user fills the form
+        if (!TextUtils.isEmpty(PreferencesUtils.getUserAPIKey(this))) {
+            APIHelper.warmUpConnection();
+        }
 
         // extract initial selection from intent
         String initialSelection = null;
@@ -117,7 +129,7 @@ public class NewBookmarkActivity extends AppCompatActivity {
     protected void onDestroy() {
         super.onDestroy();
         mBookmarkUrl.removeTextChangedListener(mUrlValidator);
-        mRealm.close();
+        RealmProvider.close(mRealm);
     }
 
     private void showLoading() {
@@ -131,7 +143,7 @@ public class NewBookmarkActivity extends AppCompatActivity {
     }
 
     private void retrieveAvailableLists(final String initialSelection) {
-        RealmUtils.retrieveListNames(mRealm, new Callbacks.OperationCallback<List<String>>() {
+        RealmReadUtils.retrieveListNames(new Callbacks.OperationCallback<List<String>>() {
             @Override
             public void onSuccess(List<String> result) {
                 mAvailableLists.addAll(result);
@@ -161,6 +173,7 @@ public class NewBookmarkActivity extends AppCompatActivity {
 
     @OnClick(R.id.button_bookmark_form_action)
     public void onSaveClick() {
+        final long saveClickTime = SystemClock.elapsedRealtime();
         showLoading();
 
         // get fields from form and set in a unmanaged bookmark object
@@ -186,6 +199,9 @@ public class NewBookmarkActivity extends AppCompatActivity {
                     new Callbacks.OperationCallback<Void>() {
                         @Override
                         public void onSuccess(Void v) {
+                            long now = SystemClock.elapsedRealtime();
+                            Timber.d("Bookmark saved " + (now - saveClickTime) + " ms after save click ("
+                                    + (now - mOpenTime) + " ms after opening).");
                             finish();
                         }
                         @Override
@@ -4,7 +4,13 @@
 package io.github.nfdz.savedio;
 
 import android.app.Application;
+import android.content.res.Configuration;
 
+import io.github.nfdz.savedio.data.RealmCompactionUtils;
+import io.github.nfdz.savedio.data.RealmProvider;
+import io.github.nfdz.savedio.data.SearchIndex;
+import io.github.nfdz.savedio.data.SearchRevisions;
+import io.github.nfdz.savedio.data.SortKeyUtils;
 import timber.log.Timber;
 
 public class SavedioppApp extends Application {
@@ -15,5 +21,17 @@ public class SavedioppApp extends Application {
             Timber.uprootAll();
             Timber.plant(new Timber.DebugTree());
         }
+        SearchRevisions.init(this);
+        RealmProvider.init(this);
+        RealmCompactionUtils.scheduleCompaction(this);
+        SearchIndex.init(this);
+        SortKeyUtils.updateIfLocaleChangedAsync(this);
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+        super.onConfigurationChanged(newConfig);
+        // title sort keys depend on locale
+        SortKeyUtils.updateIfLocaleChangedAsync(this);
     }
 }
\ No newline at end of file
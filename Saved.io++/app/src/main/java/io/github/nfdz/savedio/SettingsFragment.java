@@ -15,6 +15,8 @@ import android.support.v7.preference.PreferenceScreen;
 import android.text.TextUtils;
 
 import io.github.nfdz.savedio.data.PreferencesUtils;
+import io.github.nfdz.savedio.data.RealmCompactionUtils;
+import io.github.nfdz.savedio.data.RealmProvider;
 import io.github.nfdz.savedio.data.RealmUtils;
 import io.github.nfdz.savedio.sync.SyncUtils;
 import io.github.nfdz.savedio.utils.ImportExportUtils;
@@ -42,6 +44,9 @@ public class SettingsFragment extends PreferenceFragmentCompat implements
             }
         }
 
+        Preference storagePref = findPreference(getString(R.string.pref_storage_key));
+        storagePref.setSummary(RealmCompactionUtils.getDiagnostics(getContext()));
+
         Preference importPref = findPreference(getString(R.string.pref_import_key));
         Preference exportPref = findPreference(getString(R.string.pref_export_key));
 
@@ -88,6 +93,7 @@ public class SettingsFragment extends PreferenceFragmentCompat implements
         return !(p instanceof CheckBoxPreference) &&
                 !p.getKey().equals(getString(R.string.pref_api_key)) &&
                 !p.getKey().equals(getString(R.string.pref_export_key)) &&
+                !p.getKey().equals(getString(R.string.pref_storage_key)) &&
                 !p.getKey().equals(getString(R.string.pref_import_key));
     }
 
@@ -108,14 +114,13 @@ public class SettingsFragment extends PreferenceFragmentCompat implements
     @Override
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
-        Realm.init(getContext());
-        mRealm = Realm.getDefaultInstance();
+        mRealm = RealmProvider.open();
     }
 
     @Override
     public void onDestroy() {
         super.onDestroy();
-        mRealm.close();
+        RealmProvider.close(mRealm);
     }
 
     @Override
@@ -129,6 +134,9 @@ public class SettingsFragment extends PreferenceFragmentCompat implements
         } else if (key.equals(getString(R.string.pref_smart_key))) {
             boolean smartFavs = sharedPreferences.getBoolean(key, getResources().getBoolean(R.bool.pref_smart_default));
             updateFavorites(mRealm, smartFavs);
+        } else if (key.equals(getString(R.string.pref_smart_size_key))) {
+            // recompute smart favorites with the new size
+            if (PreferencesUtils.getSmartFavoritesFlag(getContext())) updateFavorites(mRealm, true);
         }
 
         Preference preference = findPreference(key);
@@ -166,7 +174,7 @@ public class SettingsFragment extends PreferenceFragmentCompat implements
     @Override
     public void onActivityResult(int requestCode, int resultCode, Intent resultData) {
         if (!ImportExportUtils.onImportActivityResult(requestCode, resultCode, resultData, mRealm, getContext()) &&
-            !ImportExportUtils.onExportActivityResult(requestCode, resultCode, resultData, mRealm, getContext())) {
+            !ImportExportUtils.onExportActivityResult(requestCode, resultCode, resultData, getContext())) {
             super.onActivityResult(requestCode, resultCode, resultData);
         }
     }
@@ -0,0 +1,34 @@
+/*
+ * Copyright (C) 2017 Noe Fernandez
+ */
+package io.github.nfdz.savedio.data;
+
+import android.app.IntentService;
+import android.content.Intent;
+import android.support.annotation.Nullable;
+
+import timber.log.Timber;
+
+/**
+ * Service that moves inactive bookmarks to archive in background, see BookmarkArchive.
+ */
+public class ArchiveIntentService extends IntentService {
+
+    public static final String SERVICE_NAME = "ArchiveIntentService";
+
+    public ArchiveIntentService() {
+        super(SERVICE_NAME);
+    }
+
+    @Override
+    protected void onHandleIntent(@Nullable Intent intent) {
+        long now = System.currentTimeMillis();
+        if (now - PreferencesUtils.getLastArchiveTime(this) < BookmarkArchive.ARCHIVE_INTERVAL_MILLIS) return;
+        try {
+            BookmarkArchive.archiveInactiveBookmarks();
+            PreferencesUtils.setLastArchiveTime(this, now);
+        } catch (Exception e) {
+            Timber.e(e, "There was an error archiving inactive bookmarks.");
+        }
+    }
+}
@@ -0,0 +1,14 @@
+/*
+ * Copyright (C) 2017 Noe Fernandez
+ */
+package io.github.nfdz.savedio.data;
+
+import io.github.nfdz.savedio.model.Bookmark;
+import io.realm.annotations.RealmModule;
+
+/**
+ * Realm module of archive file, it only stores bookmarks.
+ */
+@RealmModule(classes = {Bookmark.class})
+public class ArchiveModule {
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) 2017 Noe Fernandez
+ */
+package io.github.nfdz.savedio.data;
+
+import android.content.Context;
+import android.content.Intent;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import io.github.nfdz.savedio.Callbacks;
+import io.github.nfdz.savedio.model.Bookmark;
+import io.realm.Realm;
+import io.realm.RealmResults;
+import timber.log.Timber;
+
+/**
+ * This class has static methods to manage the bookmark archive. Bookmarks that are not favorite,
+ * were created long ago and have not been clicked recently are moved from main realm to archive
+ * realm, so main views, sorts and widgets do not pay for them. Searches look for matches in
+ * archive too, but they only read it. An archived bookmark is moved back to main realm when it
+ * is opened or modified.
+ *
+ * Archived bookmarks keep their list name and they are still taken into account in the bookmark
+ * counter of lists. Moves between realms and sync reconciliation have to hold LOCK.
+ */
+public class BookmarkArchive {
+
+    /** Bookmarks that have been inactive during this time are archived */
+    public static final long INACTIVITY_MILLIS = TimeUnit.DAYS.toMillis(365);
+    public static final long ARCHIVE_INTERVAL_MILLIS = TimeUnit.HOURS.toMillis(24);
+
+    /** Searches shorter than this do not look in archive */
+    public static final int MIN_SEARCH_LENGTH = 3;
+
+    private static final int ARCHIVE_BATCH_SIZE = 200;
+
+    public static final Object LOCK = new Object();
+
+    private static final ExecutorService sRestoreExecutor = Executors.newSingleThreadExecutor();
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Starts archive service, it will archive inactive bookmarks if it was not done recently.
+     * @param context
+     */
+    public static void initialize(Context context) {
+        context.startService(new Intent(context, ArchiveIntentService.class));
+    }
+
+    /**
+     * Moves inactive bookmarks from main realm to archive realm in batches. It works in a
+     * synchronous way, so it has to be invoked from a background thread.
+     * @return number of archived bookmarks.
+     */
+    public static int archiveInactiveBookmarks() {
+        long limit = System.currentTimeMillis() - INACTIVITY_MILLIS;
+        // a bookmark not clicked since limit has lower frecency than a click at limit
+        long frecencyLimit = Frecency.fromClicks(1, limit);
+        int archived = 0;
+        synchronized (LOCK) {
+            Realm realm = null;
+            Realm archive = null;
+            try {
+                realm = RealmProvider.open();
+                archive = RealmProvider.openArchive();
+                removeRestoredCopies(realm, archive);
+                while (true) {
+                    RealmResults<Bookmark> inactive = realm.where(Bookmark.class)
+                            .equalTo(Bookmark.FIELD_DELETED, Bookmark.NOT_DELETED)
+                            .equalTo(Bookmark.FIELD_FAVORITE, false)
+                            .lessThan(Bookmark.FIELD_TIMESTAMP, limit)
+                            .lessThan(Bookmark.FIELD_FRECENCY, frecencyLimit)
+                            .findAll();
+                    if (inactive.isEmpty()) break;
+                    int batchSize = Math.min(inactive.size(), ARCHIVE_BATCH_SIZE);
+                    List<Bookmark> batch = realm.copyFromRealm(inactive.subList(0, batchSize));
+                    // copy first, a failure between both transactions would leave duplicates
+                    // but never lose bookmarks
+                    archive.beginTransaction();
+                    archive.copyToRealmOrUpdate(batch);
+                    archive.commitTransaction();
+                    realm.beginTransaction();
+                    deleteBookmarks(realm, batch);
+                    realm.commitTransaction();
+                    archived += batch.size();
+                }
+            } finally {
+                RealmProvider.close(archive);
+                RealmProvider.close(realm);
+            }
+        }
+        Timber.i("Archived " + archived + " inactive bookmarks.");
+        return archived;
+    }
+
+    /**
+     * Deletes the archived bookmarks that are in main realm too. A move between realms that is
+     * interrupted leaves a copy in both of them, and main realm copy is the valid one.
+     */
+    private static void removeRestoredCopies(Realm realm, Realm archive) {
+        RealmResults<Bookmark> archived = archive.where(Bookmark.class).findAll();
+        List<Bookmark> copies = new ArrayList<>();
+        for (int start = 0; start < archived.size(); start += ARCHIVE_BATCH_SIZE) {
+            List<Bookmark> batch = archived.subList(start, Math.min(archived.size(), start + ARCHIVE_BATCH_SIZE));
+            copies.addAll(realm.where(Bookmark.class)
+                    .in(Bookmark.FIELD_ID, getIds(batch))
+                    .findAll());
+        }
+        if (copies.isEmpty()) return;
+        archive.beginTransaction();
+        deleteBookmarks(archive, copies);
+        archive.commitTransaction();
+        Timber.w("Removed " + copies.size() + " archived bookmarks that were in main realm too.");
+    }
+
+    /**
+     * Moves given archived bookmark back to main realm asynchronously. It is needed before the
+     * bookmark is modified or opened.
+     * @param bookmarkId
+     * @param callback to be notified in main thread, it succeeds if bookmark is not archived.
+     */
+    public static void restoreAsync(final String bookmarkId,
+                                    final Callbacks.OperationCallback<Void> callback) {
+        sRestoreExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Throwable error = null;
+                try {
+                    restore(bookmarkId);
+                } catch (Throwable th) {
+                    error = th;
+                }
+                final Throwable finalError = error;
+                sMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (finalError == null) {
+                            callback.onSuccess(null);
+                        } else {
+                            callback.onError("There was an error restoring archived bookmark " + bookmarkId + ".", finalError);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Moves given archived bookmark back to main realm. It works in a synchronous way, so it has
+     * to be invoked from a background thread.
+     * @param bookmarkId
+     */
+    public static void restore(String bookmarkId) {
+        synchronized (LOCK) {
+            Realm realm = null;
+            Realm archive = null;
+            try {
+                archive = RealmProvider.openArchive();
+                Bookmark bookmark = archive.where(Bookmark.class)
+                        .equalTo(Bookmark.FIELD_ID, bookmarkId)
+                        .findFirst();
+                // it could have been restored already
+                if (bookmark == null) return;
+                Bookmark restored = archive.copyFromRealm(bookmark);
+                // copy first, a failure between both transactions would leave a copy in archive
+                // that is removed when archive is updated
+                realm = RealmProvider.open();
+                realm.beginTransaction();
+                // archived revision is older than the last one read by search index
+                realm.copyToRealmOrUpdate(restored).renewSearchRevision();
+                realm.commitTransaction();
+                archive.beginTransaction();
+                bookmark.deleteFromRealm();
+                archive.commitTransaction();
+                Timber.d("Restored archived bookmark " + bookmarkId + ".");
+            } finally {
+                RealmProvider.close(realm);
+                RealmProvider.close(archive);
+            }
+        }
+    }
+
+    /**
+     * Retrieves all archived bookmarks as unmanaged objects. It works in a synchronous way.
+     * @return list of bookmarks.
+     */
+    public static List<Bookmark> getArchivedBookmarks() {
+        Realm archive = null;
+        try {
+            archive = RealmProvider.openArchive();
+            return archive.copyFromRealm(archive.where(Bookmark.class).findAll());
+        } finally {
+            RealmProvider.close(archive);
+        }
+    }
+
+    private static void deleteBookmarks(Realm realm, List<Bookmark> bookmarks) {
+        realm.where(Bookmark.class)
+                .in(Bookmark.FIELD_ID, getIds(bookmarks))
+                .findAll()
+                .deleteAllFromRealm();
+    }
+
+    private static String[] getIds(List<Bookmark> bookmarks) {
+        String[] ids = new String[bookmarks.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = bookmarks.get(i).getId();
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,299 @@
+/*
+ * Copyright (C) 2017 Noe Fernandez
+ */
+package io.github.nfdz.savedio.data;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.Nullable;
+import android.support.v7.util.DiffUtil;
+import android.text.TextUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import io.github.nfdz.savedio.Callbacks;
+import io.github.nfdz.savedio.model.Bookmark;
+import io.github.nfdz.savedio.model.BookmarkRows;
+import io.realm.Realm;
+import io.realm.RealmResults;
+import timber.log.Timber;
+
+/**
+ * This class performs bookmark queries in a background thread and creates immutable snapshots of
+ * the results, so main thread only swaps prepared rows. The differences with the current rows
+ * are computed in background too, so views are updated with precise change events. Every load
+ * supersedes the previous ones, results of superseded loads are dropped. It has to be used from
+ * main thread.
+ */
+public class BookmarkLoader {
+
+    /**
+     * A bookmark query, it is executed in the background thread with its own realm instance.
+     */
+    public interface Query {
+        RealmResults<Bookmark> findAll(Realm realm);
+    }
+
+    /**
+     * The result of a load, the snapshot of results and its differences with the current rows.
+     */
+    public static class Result {
+
+        private final BookmarkRows mRows;
+        private final DiffUtil.DiffResult mDiff;
+
+        private Result(BookmarkRows rows, DiffUtil.DiffResult diff) {
+            mRows = rows;
+            mDiff = diff;
+        }
+
+        public BookmarkRows getRows() {
+            return mRows;
+        }
+
+        /** It is null if differences were not computed */
+        @Nullable
+        public DiffUtil.DiffResult getDiff() {
+            return mDiff;
+        }
+    }
+
+    private interface Producer {
+        BookmarkRows produce() throws Exception;
+    }
+
+    private static final ExecutorService sLoadExecutor = Executors.newSingleThreadExecutor();
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+
+    /** Generation of the last load, only its results are published */
+    private volatile int mGeneration = 0;
+
+    /**
+     * Loads the results of given query in background.
+     * @param query it has to capture all its parameters, it is executed later in other thread.
+     * @param current rows that are shown now, differences are computed against them. It is null
+     *                if differences are not needed (for example, content has been replaced).
+     * @param callback to be notified in main thread with the result, it is not notified if the
+     *                 load is superseded by a newer one.
+     */
+    public void load(final Query query,
+                     @Nullable final BookmarkRows current,
+                     final Callbacks.FinishCallback<Result> callback) {
+        submit(new Producer() {
+            @Override
+            public BookmarkRows produce() throws Exception {
+                return RealmProvider.execute(new RealmProvider.Task<BookmarkRows>() {
+                    @Override
+                    public BookmarkRows execute(Realm realm) {
+                        return BookmarkRows.fromBookmarks(query.findAll(realm));
+                    }
+                });
+            }
+        }, current, callback);
+    }
+
+    /**
+     * Searches the rows of a previous load in background without querying realm. Given rows keep
+     * their order. Search index finds the candidates, so only their rows are checked. If index
+     * cannot be used, all rows are checked. Matches of archive realm are appended if it is given
+     * an archive query.
+     * @param content rows of a previous load without filter.
+     * @param foldedFilter search text folded with SearchUtils, if it is empty content is not
+     *                     filtered.
+     * @param archiveQuery query of the archived matches or null if archive is not searched.
+     * @param current rows that are shown now, see load method.
+     * @param callback see load method.
+     */
+    public void search(final BookmarkRows content,
+                       final String foldedFilter,
+                       @Nullable final Query archiveQuery,
+                       @Nullable final BookmarkRows current,
+                       final Callbacks.FinishCallback<Result> callback) {
+        submit(new Producer() {
+            @Override
+            public BookmarkRows produce() throws Exception {
+                if (TextUtils.isEmpty(foldedFilter)) return content;
+                BookmarkRows matches = searchRows(content, foldedFilter);
+                return archiveQuery != null ? appendArchived(matches, content, archiveQuery) : matches;
+            }
+        }, current, callback);
+    }
+
+    private static BookmarkRows searchRows(BookmarkRows content, String foldedFilter) {
+        String[] candidates = SearchIndex.getInstance().findCandidates(foldedFilter);
+        if (candidates == null) return content.filter(foldedFilter);
+        int[] rows = new int[candidates.length];
+        int size = 0;
+        for (String id : candidates) {
+            int row = content.indexOf(id);
+            if (row >= 0) rows[size++] = row;
+        }
+        // candidates are in index order
+        Arrays.sort(rows, 0, size);
+        int matches = 0;
+        for (int i = 0; i < size; i++) {
+            if (content.matches(rows[i], foldedFilter)) rows[matches++] = rows[i];
+        }
+        return content.select(rows, matches);
+    }
+
+    /**
+     * Appends the archived results of given query to given matches. Archive is only read, its
+     * bookmarks are moved back to main realm when they are used (see BookmarkArchive).
+     */
+    private static BookmarkRows appendArchived(final BookmarkRows matches,
+                                               final BookmarkRows content,
+                                               final Query archiveQuery) throws Exception {
+        return RealmProvider.executeArchive(new RealmProvider.Task<BookmarkRows>() {
+            @Override
+            public BookmarkRows execute(Realm archive) {
+                BookmarkRows archived = BookmarkRows.fromBookmarks(archiveQuery.findAll(archive), true);
+                int[] rows = new int[archived.size()];
+                int size = 0;
+                for (int row = 0; row < archived.size(); row++) {
+                    // a restore could have been interrupted, main realm copy is the valid one
+                    if (content.indexOf(archived.getId(row)) < 0) rows[size++] = row;
+                }
+                return size > 0 ? matches.append(archived, rows, size) : matches;
+            }
+        });
+    }
+
+    /**
+     * Filters the rows of a previous load in background without querying realm. Given rows keep
+     * their order. It checks every row, so it is meant to narrow the results of a previous search.
+     * @param source rows of a previous load.
+     * @param foldedFilter search text folded with SearchUtils, if it is empty source is not
+     *                     filtered.
+     * @param current rows that are shown now, see load method.
+     * @param callback see load method.
+     */
+    public void filter(final BookmarkRows source,
+                       final String foldedFilter,
+                       @Nullable final BookmarkRows current,
+                       final Callbacks.FinishCallback<Result> callback) {
+        submit(new Producer() {
+            @Override
+            public BookmarkRows produce() {
+                if (TextUtils.isEmpty(foldedFilter)) return source;
+                return source.filter(foldedFilter);
+            }
+        }, current, callback);
+    }
+
+    /**
+     * Looks for the rows of a previous load that are similar to given search in background (for
+     * example, when search has typos). Similar rows are sorted by edit distance, then favorites
+     * first, then most clicked first, and then they keep their order.
+     * @param source rows of a previous load.
+     * @param foldedFilter search text folded with SearchUtils.
+     * @param current rows that are shown now, see load method.
+     * @param callback see load method.
+     */
+    public void findSimilar(final BookmarkRows source,
+                            final String foldedFilter,
+                            @Nullable final BookmarkRows current,
+                            final Callbacks.FinishCallback<Result> callback) {
+        submit(new Producer() {
+            @Override
+            public BookmarkRows produce() {
+                final Map<String, Integer> distances = SearchIndex.getInstance().findSimilar(foldedFilter);
+                if (distances == null || distances.isEmpty()) return BookmarkRows.EMPTY;
+                List<Integer> similar = new ArrayList<>();
+                for (int row = 0; row < source.size(); row++) {
+                    if (distances.containsKey(source.getId(row))) similar.add(row);
+                }
+                // sort is stable, so equally ranked rows keep their order
+                Collections.sort(similar, new Comparator<Integer>() {
+                    @Override
+                    public int compare(Integer a, Integer b) {
+                        int distanceDiff = distances.get(source.getId(a)) - distances.get(source.getId(b));
+                        if (distanceDiff != 0) return distanceDiff;
+                        if (source.isFavorite(a) != source.isFavorite(b)) return source.isFavorite(a) ? -1 : 1;
+                        return source.getClickCounter(b) - source.getClickCounter(a);
+                    }
+                });
+                int[] rows = new int[similar.size()];
+                for (int i = 0; i < rows.length; i++) {
+                    rows[i] = similar.get(i);
+                }
+                return source.select(rows, rows.length);
+            }
+        }, current, callback);
+    }
+
+    private void submit(final Producer producer,
+                        @Nullable final BookmarkRows current,
+                        final Callbacks.FinishCallback<Result> callback) {
+        final int generation = ++mGeneration;
+        sLoadExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                // skip loads superseded while waiting
+                if (generation != mGeneration) return;
+                BookmarkRows rows;
+                try {
+                    rows = producer.produce();
+                } catch (Exception e) {
+                    Timber.e(e, "There was an error loading bookmarks.");
+                    rows = BookmarkRows.EMPTY;
+                }
+                if (generation != mGeneration) return;
+                DiffUtil.DiffResult diff = current != null ?
+                        DiffUtil.calculateDiff(new RowsDiffCallback(current, rows)) : null;
+                final Result result = new Result(rows, diff);
+                sMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation == mGeneration) callback.onFinish(result);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Drops the results of pending loads.
+     */
+    public void cancel() {
+        mGeneration++;
+    }
+
+    private static class RowsDiffCallback extends DiffUtil.Callback {
+
+        private final BookmarkRows mOldRows;
+        private final BookmarkRows mNewRows;
+
+        private RowsDiffCallback(BookmarkRows oldRows, BookmarkRows newRows) {
+            mOldRows = oldRows;
+            mNewRows = newRows;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return mOldRows.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return mNewRows.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            return mOldRows.getStableId(oldItemPosition) == mNewRows.getStableId(newItemPosition);
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            return mOldRows.hasSameContent(oldItemPosition, mNewRows, newItemPosition);
+        }
+    }
+}
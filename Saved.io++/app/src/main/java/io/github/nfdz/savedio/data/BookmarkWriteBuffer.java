@@ -0,0 +1,272 @@
+/*
+ * Copyright (C) 2017 Noe Fernandez
+ */
+package io.github.nfdz.savedio.data;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import io.github.nfdz.savedio.model.Bookmark;
+import io.github.nfdz.savedio.widget.WidgetUtils;
+import io.realm.Realm;
+import timber.log.Timber;
+
+/**
+ * This class buffers bookmark click increments and favorite flag changes in memory and writes
+ * them to realm in a single transaction. Buffered writes are flushed after a short delay, when
+ * the buffer is full or when flush is invoked explicitly. If a flush fails, its writes are
+ * buffered again to be retried. It has to be used from main thread.
+ *
+ * Bookmarks archived after they were shown are moved back to main realm before writing.
+ *
+ * Shown bookmarks are snapshots, so favorite flags are overlaid on them until a snapshot that
+ * was loaded after the flush arrives (see onSnapshotLoaded).
+ */
+public class BookmarkWriteBuffer {
+
+    private static final long FLUSH_DELAY_MILLIS = 1000;
+    private static final int MAX_PENDING_WRITES = 20;
+
+    private static BookmarkWriteBuffer sInstance;
+
+    /**
+     * Returns the application write buffer.
+     * @param context
+     * @return BookmarkWriteBuffer
+     */
+    public static BookmarkWriteBuffer getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new BookmarkWriteBuffer(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private final Context mContext;
+    private final Handler mHandler;
+    private final ExecutorService mWriteExecutor;
+    private final Runnable mFlushRunnable;
+
+    /** Click increments by bookmark ID that are not flushed yet */
+    private Map<String, Integer> mPendingClicks = new HashMap<>();
+    /** Favorite flags by bookmark ID that are not flushed yet */
+    private Map<String, Boolean> mPendingFavorites = new HashMap<>();
+    /** Favorite flags by bookmark ID that are being flushed or are not loaded in a snapshot yet */
+    private Map<String, Boolean> mFlushingFavorites = new HashMap<>();
+    /** Number of the flush that wrote the favorite flag by bookmark ID */
+    private Map<String, Integer> mFlushedFavorites = new HashMap<>();
+    /** Number of flushes that have been written */
+    private int mFlushCount = 0;
+
+    private BookmarkWriteBuffer(Context context) {
+        mContext = context;
+        mHandler = new Handler(Looper.getMainLooper());
+        mWriteExecutor = Executors.newSingleThreadExecutor();
+        mFlushRunnable = new Runnable() {
+            @Override
+            public void run() {
+                flush();
+            }
+        };
+    }
+
+    /**
+     * Buffers a click of given bookmark.
+     * @param bookmarkId
+     */
+    public void incrementClickCounter(String bookmarkId) {
+        Integer clicks = mPendingClicks.get(bookmarkId);
+        mPendingClicks.put(bookmarkId, clicks == null ? 1 : clicks + 1);
+        onWriteBuffered();
+    }
+
+    /**
+     * Buffers favorite flag of given bookmark.
+     * @param bookmarkId
+     * @param isFavorite
+     */
+    public void setFavorite(String bookmarkId, boolean isFavorite) {
+        mPendingFavorites.put(bookmarkId, isFavorite);
+        onWriteBuffered();
+    }
+
+    /**
+     * Returns favorite flag of given bookmark taking into account buffered changes.
+     * @param bookmarkId
+     * @param storedFavorite favorite flag stored in realm.
+     * @return true if it is favorite.
+     */
+    public boolean isFavorite(String bookmarkId, boolean storedFavorite) {
+        Boolean isFavorite = mPendingFavorites.get(bookmarkId);
+        if (isFavorite == null) isFavorite = mFlushingFavorites.get(bookmarkId);
+        return isFavorite != null ? isFavorite : storedFavorite;
+    }
+
+    /**
+     * Returns the number of flushes that have been written. A snapshot whose load starts after
+     * invoking this method contains all of them.
+     * @return int flush count.
+     */
+    public int getFlushCount() {
+        return mFlushCount;
+    }
+
+    /**
+     * Notifies that a snapshot of realm has been loaded, so favorite flags written before it do
+     * not need to be overlaid anymore.
+     * @param flushCount value of getFlushCount when snapshot load started.
+     */
+    public void onSnapshotLoaded(int flushCount) {
+        Iterator<Map.Entry<String, Integer>> iterator = mFlushedFavorites.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Integer> flushed = iterator.next();
+            if (flushed.getValue() <= flushCount) {
+                mFlushingFavorites.remove(flushed.getKey());
+                iterator.remove();
+            }
+        }
+    }
+
+    private void onWriteBuffered() {
+        if (mPendingClicks.size() + mPendingFavorites.size() >= MAX_PENDING_WRITES) {
+            flush();
+        } else {
+            mHandler.removeCallbacks(mFlushRunnable);
+            mHandler.postDelayed(mFlushRunnable, FLUSH_DELAY_MILLIS);
+        }
+    }
+
+    /**
+     * Writes all buffered changes in a single transaction asynchronously.
+     */
+    public void flush() {
+        mHandler.removeCallbacks(mFlushRunnable);
+        if (mPendingClicks.isEmpty() && mPendingFavorites.isEmpty()) return;
+        final Map<String, Integer> clicks = mPendingClicks;
+        final Map<String, Boolean> favorites = mPendingFavorites;
+        mPendingClicks = new HashMap<>();
+        mPendingFavorites = new HashMap<>();
+        mFlushingFavorites.putAll(favorites);
+        mFlushedFavorites.keySet().removeAll(favorites.keySet());
+        mWriteExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final boolean success = write(clicks, favorites);
+                mHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (success) {
+                            onFlushed(favorites);
+                        } else {
+                            onFlushFailed(clicks, favorites);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private void onFlushed(Map<String, Boolean> favorites) {
+        mFlushCount++;
+        for (Map.Entry<String, Boolean> favorite : favorites.entrySet()) {
+            // it is overlaid until it is loaded, unless it was changed again meanwhile
+            if (favorite.getValue().equals(mFlushingFavorites.get(favorite.getKey())) &&
+                    !mPendingFavorites.containsKey(favorite.getKey())) {
+                mFlushedFavorites.put(favorite.getKey(), mFlushCount);
+            }
+        }
+        WidgetUtils.updateFavWidgets(mContext);
+    }
+
+    private void onFlushFailed(Map<String, Integer> clicks, Map<String, Boolean> favorites) {
+        for (Map.Entry<String, Integer> click : clicks.entrySet()) {
+            Integer pendingClicks = mPendingClicks.get(click.getKey());
+            mPendingClicks.put(click.getKey(), pendingClicks == null ? click.getValue() : pendingClicks + click.getValue());
+        }
+        for (Map.Entry<String, Boolean> favorite : favorites.entrySet()) {
+            // newer changes win
+            if (!mPendingFavorites.containsKey(favorite.getKey())) {
+                mPendingFavorites.put(favorite.getKey(), favorite.getValue());
+            }
+        }
+        // retry later, not immediately even if buffer is full
+        mHandler.removeCallbacks(mFlushRunnable);
+        mHandler.postDelayed(mFlushRunnable, FLUSH_DELAY_MILLIS);
+    }
+
+    /**
+     * Writes given changes in a single transaction. It works in a synchronous way.
+     * @return true if they were written.
+     */
+    private boolean write(final Map<String, Integer> clicks, final Map<String, Boolean> favorites) {
+        final boolean smartFavorites = PreferencesUtils.getSmartFavoritesFlag(mContext);
+        final int smartFavoritesSize = PreferencesUtils.getSmartFavoritesSize(mContext);
+        final long now = System.currentTimeMillis();
+        Realm realm = null;
+        try {
+            realm = RealmProvider.open();
+            // archive cannot move them between restoring and writing
+            synchronized (BookmarkArchive.LOCK) {
+                // shown bookmarks could have been archived after they were loaded
+                restoreArchived(realm, favorites.keySet());
+                restoreArchived(realm, clicks.keySet());
+                realm.executeTransaction(new Realm.Transaction() {
+                    @Override
+                    public void execute(Realm realm) {
+                        for (Map.Entry<String, Boolean> favorite : favorites.entrySet()) {
+                            Bookmark bookmark = findBookmark(realm, favorite.getKey());
+                            if (bookmark != null) {
+                                bookmark.setFavorite(favorite.getValue());
+                            } else {
+                                Timber.w("Favorite flag of bookmark " + favorite.getKey() + " was dropped, it does not exist anymore.");
+                            }
+                        }
+                        for (Map.Entry<String, Integer> click : clicks.entrySet()) {
+                            Bookmark bookmark = findBookmark(realm, click.getKey());
+                            if (bookmark == null) {
+                                Timber.w("Clicks of bookmark " + click.getKey() + " were dropped, it does not exist anymore.");
+                                continue;
+                            }
+                            bookmark.setClickCounter(bookmark.getClickCounter() + click.getValue());
+                            long frecency = bookmark.getFrecency();
+                            for (int i = 0; i < click.getValue(); i++) {
+                                frecency = Frecency.addClick(frecency, now);
+                            }
+                            bookmark.setFrecency(frecency);
+                            if (smartFavorites) SmartFavorites.onClicked(realm, bookmark, smartFavoritesSize);
+                        }
+                    }
+                });
+            }
+            Timber.d("Flushed " + clicks.size() + " click counters and " + favorites.size() + " favorite flags.");
+            return true;
+        } catch (Exception e) {
+            Timber.e(e, "There was an error flushing buffered bookmark writes, they will be retried.");
+            return false;
+        } finally {
+            RealmProvider.close(realm);
+        }
+    }
+
+    /**
+     * Moves back to main realm the given bookmarks that are archived. It has to hold archive lock.
+     */
+    private static void restoreArchived(Realm realm, Set<String> bookmarkIds) {
+        for (String bookmarkId : bookmarkIds) {
+            if (findBookmark(realm, bookmarkId) == null) BookmarkArchive.restore(bookmarkId);
+        }
+    }
+
+    private static Bookmark findBookmark(Realm realm, String bookmarkId) {
+        return realm.where(Bookmark.class)
+                .equalTo(Bookmark.FIELD_ID, bookmarkId)
+                .findFirst();
+    }
+}
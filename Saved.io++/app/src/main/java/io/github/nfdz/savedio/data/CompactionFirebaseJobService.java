@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2017 Noe Fernandez
+ */
+package io.github.nfdz.savedio.data;
+
+import android.os.AsyncTask;
+
+import com.firebase.jobdispatcher.JobParameters;
+import com.firebase.jobdispatcher.JobService;
+
+import timber.log.Timber;
+
+/**
+ * Realm compaction firebase job service implementation, see RealmCompactionUtils.
+ */
+public class CompactionFirebaseJobService extends JobService {
+
+    private AsyncTask<Void, Void, Void> mCompactionTask;
+
+    @Override
+    public boolean onStartJob(final JobParameters job) {
+        mCompactionTask = new AsyncTask<Void, Void, Void>() {
+            @Override
+            protected Void doInBackground(Void... params) {
+                try {
+                    RealmCompactionUtils.compactIfNeeded(CompactionFirebaseJobService.this);
+                } catch (Exception e) {
+                    Timber.e(e, "There was an error compacting realm file.");
+                }
+                return null;
+            }
+            @Override
+            protected void onPostExecute(Void v) {
+                jobFinished(job, false);
+            }
+        }.execute();
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters job) {
+        // compaction cannot be interrupted, job is recurring anyway
+        return false;
+    }
+}
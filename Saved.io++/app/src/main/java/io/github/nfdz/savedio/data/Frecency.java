@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2017 Noe Fernandez
+ */
+package io.github.nfdz.savedio.data;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class contains static methods to compute bookmark frecency, a click score that decays
+ * exponentially with time (every click loses half of its weight after a half life).
+ *
+ * Instead of storing the decayed score, that would have to be recomputed for every bookmark as
+ * time goes by, it stores the natural logarithm of the score scaled to a fixed reference time
+ * (epoch). The decay factor is the same for all bookmarks, so comparing stored values is the same
+ * as comparing decayed scores at any time and a click is an O(1) update. The value is stored as a
+ * long in micro units so it can be indexed.
+ */
+public class Frecency {
+
+    /** Frecency of a bookmark that has never been clicked */
+    public static final long NONE = 0L;
+
+    public static final long HALF_LIFE_MILLIS = TimeUnit.DAYS.toMillis(30);
+
+    /** Reference time, 2017-01-01 00:00:00 UTC */
+    private static final long EPOCH_MILLIS = 1483228800000L;
+
+    private static final double SCALE = 1000000d;
+
+    private static final double DECAY_RATE = Math.log(2) / HALF_LIFE_MILLIS;
+
+    /**
+     * Adds a click to given frecency.
+     * @param frecency current stored value.
+     * @param clickTime time of the click in millis.
+     * @return new stored value.
+     */
+    public static long addClick(long frecency, long clickTime) {
+        double click = toLogScale(clickTime);
+        if (frecency == NONE) return Math.round(click * SCALE);
+        double current = frecency / SCALE;
+        // log(exp(current) + exp(click)) without overflow
+        double max = Math.max(current, click);
+        double sum = max + Math.log1p(Math.exp(-Math.abs(current - click)));
+        return Math.round(sum * SCALE);
+    }
+
+    /**
+     * Computes the frecency of a bookmark with given clicks as if all of them were performed at
+     * the given time. It is useful when clicks time is unknown.
+     * @param clicks
+     * @param time in millis.
+     * @return stored value.
+     */
+    public static long fromClicks(int clicks, long time) {
+        if (clicks <= 0) return NONE;
+        return Math.round((toLogScale(time) + Math.log(clicks)) * SCALE);
+    }
+
+    private static double toLogScale(long time) {
+        return (time - EPOCH_MILLIS) * DECAY_RATE;
+    }
+}
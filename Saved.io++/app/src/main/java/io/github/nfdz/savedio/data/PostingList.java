@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2017 Noe Fernandez
+ */
+package io.github.nfdz.savedio.data;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * This class is a sorted set of ints backed by a primitive array. It is used as posting list
+ * of search indexes, where ints are bookmark ordinals.
+ */
+class PostingList {
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    private int[] mValues;
+    private int mSize = 0;
+
+    PostingList() {
+        mValues = new int[INITIAL_CAPACITY];
+    }
+
+    PostingList(int capacity) {
+        mValues = new int[Math.max(capacity, INITIAL_CAPACITY)];
+    }
+
+    /**
+     * Adds given value if it is not in the list yet.
+     * @param value
+     */
+    void add(int value) {
+        // most of the times values are added in order
+        if (mSize > 0 && mValues[mSize - 1] < value) {
+            ensureCapacity(mSize + 1);
+            mValues[mSize++] = value;
+            return;
+        }
+        int index = Arrays.binarySearch(mValues, 0, mSize, value);
+        if (index >= 0) return;
+        index = -index - 1;
+        ensureCapacity(mSize + 1);
+        System.arraycopy(mValues, index, mValues, index + 1, mSize - index);
+        mValues[index] = value;
+        mSize++;
+    }
+
+    /**
+     * Removes given value if it is in the list.
+     * @param value
+     */
+    void remove(int value) {
+        int index = Arrays.binarySearch(mValues, 0, mSize, value);
+        if (index < 0) return;
+        System.arraycopy(mValues, index + 1, mValues, index, mSize - index - 1);
+        mSize--;
+    }
+
+    /**
+     * Removes and returns the greatest value, the list cannot be empty.
+     * @return int value.
+     */
+    int removeLast() {
+        return mValues[--mSize];
+    }
+
+    int get(int index) {
+        return mValues[index];
+    }
+
+    int size() {
+        return mSize;
+    }
+
+    /**
+     * Sets the bits of all values in given bit set.
+     * @param bits
+     */
+    void addTo(BitSet bits) {
+        for (int i = 0; i < mSize; i++) {
+            bits.set(mValues[i]);
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > mValues.length) {
+            mValues = Arrays.copyOf(mValues, Math.max(capacity, mValues.length * 2));
+        }
+    }
+}
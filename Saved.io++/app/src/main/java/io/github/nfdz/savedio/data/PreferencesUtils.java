@@ -22,6 +22,25 @@ public class PreferencesUtils {
     private static final String LAST_SYNC_KEY = "last-sync";
     private static final long LAST_SYNC_DEFAULT = 0L;
 
+    private static final String LAST_ARCHIVE_KEY = "last-archive";
+    private static final long LAST_ARCHIVE_DEFAULT = 0L;
+
+    private static final String SORT_KEYS_LOCALE_KEY = "sort-keys-locale";
+    private static final String SORT_KEYS_LOCALE_DEFAULT = "";
+
+    private static final String SEARCH_REVISIONS_RESERVED_KEY = "search-revisions-reserved";
+    private static final long SEARCH_REVISIONS_RESERVED_DEFAULT = 0L;
+
+    private static final String REALM_COMPACTED_SIZE_KEY = "realm-compacted-size";
+    private static final String REALM_COMPACTION_BEFORE_SIZE_KEY = "realm-compaction-before-size";
+    private static final String REALM_COMPACTION_DURATION_KEY = "realm-compaction-duration";
+    private static final String REALM_COMPACTION_TIME_KEY = "realm-compaction-time";
+    private static final long REALM_COMPACTION_DEFAULT = 0L;
+    private static final String ARCHIVE_COMPACTED_SIZE_KEY = "archive-compacted-size";
+
+    /** Realm compaction time when realm file has never been compacted */
+    public static final long NO_COMPACTION_TIME = REALM_COMPACTION_DEFAULT;
+
     /**
      * Retrieves sort preference in an asynchronous way.
      * @param context
@@ -81,6 +100,18 @@ public class PreferencesUtils {
         return sp.getBoolean(key, defaultFlag);
     }
 
+    /**
+     * Retrieves the maximum number of smart favorites preference in a synchronous way.
+     * @param context
+     * @return int number of smart favorites
+     */
+    public static int getSmartFavoritesSize(Context context) {
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
+        String key = context.getString(R.string.pref_smart_size_key);
+        String defaultSize = context.getString(R.string.pref_smart_size_default);
+        return Integer.parseInt(sp.getString(key, defaultSize));
+    }
+
     /**
      * Retrieves last synchronization time in an asynchronous way.
      * @param context
@@ -114,6 +145,157 @@ public class PreferencesUtils {
         editor.apply();
     }
 
+    /**
+     * Retrieves last archive time in a synchronous way.
+     * @param context
+     * @return long last archive time in millis.
+     */
+    public static long getLastArchiveTime(Context context) {
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
+        return sp.getLong(LAST_ARCHIVE_KEY, LAST_ARCHIVE_DEFAULT);
+    }
+
+    /**
+     * Updates last archive preference time with the given one in an asynchronous way.
+     * @param context
+     * @param lastArchiveTime
+     */
+    public static void setLastArchiveTime(Context context, long lastArchiveTime) {
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
+        SharedPreferences.Editor editor = sp.edit();
+        editor.putLong(LAST_ARCHIVE_KEY, lastArchiveTime);
+        editor.apply();
+    }
+
+    /**
+     * Retrieves the locale of stored sort keys in a synchronous way.
+     * @param context
+     * @return String locale, it is empty if it was never checked.
+     */
+    public static String getSortKeysLocale(Context context) {
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
+        return sp.getString(SORT_KEYS_LOCALE_KEY, SORT_KEYS_LOCALE_DEFAULT);
+    }
+
+    /**
+     * Updates the locale of stored sort keys in an asynchronous way.
+     * @param context
+     * @param locale
+     */
+    public static void setSortKeysLocale(Context context, String locale) {
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
+        SharedPreferences.Editor editor = sp.edit();
+        editor.putString(SORT_KEYS_LOCALE_KEY, locale);
+        editor.apply();
+    }
+
+    /**
+     * Retrieves the last reserved search revision in a synchronous way.
+     * @param context
+     * @return long revision, it is 0 if revisions were never reserved.
+     */
+    public static long getSearchRevisionsReserved(Context context) {
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
+        return sp.getLong(SEARCH_REVISIONS_RESERVED_KEY, SEARCH_REVISIONS_RESERVED_DEFAULT);
+    }
+
+    /**
+     * Updates the last reserved search revision in a synchronous way, so it is in disk when this
+     * method returns.
+     * @param context
+     * @param revision
+     */
+    public static void setSearchRevisionsReserved(Context context, long revision) {
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
+        SharedPreferences.Editor editor = sp.edit();
+        editor.putLong(SEARCH_REVISIONS_RESERVED_KEY, revision);
+        editor.commit();
+    }
+
+    /**
+     * Retrieves realm file size after last compaction in a synchronous way.
+     * @param context
+     * @return long size in bytes, it is 0 if it was never compacted.
+     */
+    public static long getRealmCompactedSize(Context context) {
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
+        return sp.getLong(REALM_COMPACTED_SIZE_KEY, REALM_COMPACTION_DEFAULT);
+    }
+
+    /**
+     * Retrieves archive realm file size after last compaction in a synchronous way.
+     * @param context
+     * @return long size in bytes, it is 0 if it was never compacted.
+     */
+    public static long getArchiveCompactedSize(Context context) {
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
+        return sp.getLong(ARCHIVE_COMPACTED_SIZE_KEY, REALM_COMPACTION_DEFAULT);
+    }
+
+    /**
+     * Updates archive realm file size after last compaction in an asynchronous way.
+     * @param context
+     * @param compactedSize file size after compaction in bytes.
+     */
+    public static void setArchiveCompactedSize(Context context, long compactedSize) {
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
+        SharedPreferences.Editor editor = sp.edit();
+        editor.putLong(ARCHIVE_COMPACTED_SIZE_KEY, compactedSize);
+        editor.apply();
+    }
+
+    /**
+     * Retrieves realm file size before last compaction in a synchronous way.
+     * @param context
+     * @return long size in bytes, it is 0 if it was never compacted.
+     */
+    public static long getRealmCompactionBeforeSize(Context context) {
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
+        return sp.getLong(REALM_COMPACTION_BEFORE_SIZE_KEY, REALM_COMPACTION_DEFAULT);
+    }
+
+    /**
+     * Retrieves duration of last realm compaction in a synchronous way.
+     * @param context
+     * @return long duration in millis, it is 0 if it was never compacted.
+     */
+    public static long getRealmCompactionDuration(Context context) {
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
+        return sp.getLong(REALM_COMPACTION_DURATION_KEY, REALM_COMPACTION_DEFAULT);
+    }
+
+    /**
+     * Retrieves time of last realm compaction in a synchronous way.
+     * @param context
+     * @return long time in millis, it is NO_COMPACTION_TIME if it was never compacted.
+     */
+    public static long getRealmCompactionTime(Context context) {
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
+        return sp.getLong(REALM_COMPACTION_TIME_KEY, REALM_COMPACTION_DEFAULT);
+    }
+
+    /**
+     * Updates last realm compaction preferences in an asynchronous way.
+     * @param context
+     * @param beforeSize file size before compaction in bytes.
+     * @param compactedSize file size after compaction in bytes.
+     * @param duration in millis.
+     * @param time in millis.
+     */
+    public static void setRealmCompaction(Context context,
+                                          long beforeSize,
+                                          long compactedSize,
+                                          long duration,
+                                          long time) {
+        SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(context);
+        SharedPreferences.Editor editor = sp.edit();
+        editor.putLong(REALM_COMPACTION_BEFORE_SIZE_KEY, beforeSize);
+        editor.putLong(REALM_COMPACTED_SIZE_KEY, compactedSize);
+        editor.putLong(REALM_COMPACTION_DURATION_KEY, duration);
+        editor.putLong(REALM_COMPACTION_TIME_KEY, time);
+        editor.apply();
+    }
+
     /**
      * Updates finished introduction flag preference in an asynchronous way.
      * @param context
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2017 Noe Fernandez
+ */
+package io.github.nfdz.savedio.data;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.text.format.Formatter;
+
+import com.firebase.jobdispatcher.Constraint;
+import com.firebase.jobdispatcher.Driver;
+import com.firebase.jobdispatcher.FirebaseJobDispatcher;
+import com.firebase.jobdispatcher.GooglePlayDriver;
+import com.firebase.jobdispatcher.Job;
+import com.firebase.jobdispatcher.Lifetime;
+import com.firebase.jobdispatcher.Trigger;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import io.github.nfdz.savedio.R;
+import io.realm.Realm;
+import io.realm.RealmConfiguration;
+import timber.log.Timber;
+
+/**
+ * This class has static methods to keep realm file size under control. Realm files (main and
+ * archive) do not shrink when data is deleted, so they are compacted when they have grown enough
+ * since their last compaction. Size after last compaction is used as the estimation of live data
+ * size.
+ *
+ * Compaction of a big file takes long, so it is performed by a maintenance job while the device
+ * is charging and never in main thread.
+ */
+public class RealmCompactionUtils {
+
+    /** Files smaller than this size are never compacted */
+    private static final long MIN_SIZE_TO_COMPACT = 1024 * 1024;
+    /** File is compacted when it is this times bigger than after last compaction */
+    private static final long GROWTH_FACTOR_TO_COMPACT = 2;
+
+    public static final long COMPACTION_INTERVAL_SECONDS = TimeUnit.HOURS.toSeconds(24);
+    public static final long COMPACTION_FLEXTIME_SECONDS = COMPACTION_INTERVAL_SECONDS / 2;
+
+    private static final String COMPACTION_TAG = "savediopp-compaction";
+
+    /**
+     * Schedules the recurring compaction job. Current schedule is kept if it already exists.
+     * @param context
+     */
+    public static void scheduleCompaction(@NonNull Context context) {
+        Driver driver = new GooglePlayDriver(context);
+        FirebaseJobDispatcher dispatcher = new FirebaseJobDispatcher(driver);
+
+        Job compactionJob = dispatcher.newJobBuilder()
+                .setService(CompactionFirebaseJobService.class)
+                .setTag(COMPACTION_TAG)
+                .setConstraints(Constraint.DEVICE_CHARGING)
+                .setLifetime(Lifetime.FOREVER)
+                .setRecurring(true)
+                .setTrigger(Trigger.executionWindow(
+                        (int) COMPACTION_INTERVAL_SECONDS,
+                        (int) COMPACTION_INTERVAL_SECONDS + (int) COMPACTION_FLEXTIME_SECONDS))
+                // replacing it every start would postpone it forever for daily users
+                .setReplaceCurrent(false)
+                .build();
+
+        dispatcher.schedule(compactionJob);
+    }
+
+    /**
+     * Compacts main and archive realm files if they crossed the growth threshold. It works in a
+     * synchronous way, so it has to be invoked from a background thread.
+     * @param context
+     */
+    public static void compactIfNeeded(Context context) {
+        compactIfNeeded(context, RealmProvider.getConfiguration(), false);
+        // deleted archive batches (restores, synchronization) leave free space too
+        compactIfNeeded(context, RealmProvider.getArchiveConfiguration(), true);
+    }
+
+    /**
+     * Compacts realm file of given configuration if it crossed the growth threshold. Realm does
+     * not compact a file that has open instances, so it is skipped if this process has any and
+     * it is tried again next time.
+     */
+    private static void compactIfNeeded(Context context, RealmConfiguration config, boolean isArchive) {
+        File file = new File(config.getPath());
+        if (!file.exists()) return;
+        long size = file.length();
+        long compactedSize = isArchive ?
+                PreferencesUtils.getArchiveCompactedSize(context) :
+                PreferencesUtils.getRealmCompactedSize(context);
+        if (size < MIN_SIZE_TO_COMPACT || size < compactedSize * GROWTH_FACTOR_TO_COMPACT) return;
+        if (RealmProvider.getOpenInstanceCount() > 0) {
+            Timber.d("Realm file " + file.getName() + " was not compacted because it is in use.");
+            return;
+        }
+
+        long start = SystemClock.elapsedRealtime();
+        boolean success;
+        try {
+            success = Realm.compactRealm(config);
+        } catch (Exception e) {
+            Timber.e(e, "There was an error compacting realm file " + file.getName() + ".");
+            success = false;
+        }
+        long duration = SystemClock.elapsedRealtime() - start;
+        if (!success) {
+            Timber.w("Realm file " + file.getName() + " was not compacted (" + size + " bytes).");
+            return;
+        }
+
+        long newSize = file.length();
+        if (isArchive) {
+            PreferencesUtils.setArchiveCompactedSize(context, newSize);
+        } else {
+            PreferencesUtils.setRealmCompaction(context, size, newSize, duration, System.currentTimeMillis());
+        }
+        Timber.i("Realm file " + file.getName() + " compacted from " + size + " to " + newSize + " bytes in " + duration + " ms.");
+    }
+
+    /**
+     * Creates a readable summary of current realm file size and last compaction.
+     * @param context
+     * @return String summary
+     */
+    public static String getDiagnostics(Context context) {
+        File file = new File(RealmProvider.getConfiguration().getPath());
+        String currentSize = Formatter.formatShortFileSize(context, file.length());
+        if (PreferencesUtils.getRealmCompactionTime(context) == PreferencesUtils.NO_COMPACTION_TIME) {
+            return String.format(context.getString(R.string.pref_storage_summary_format), currentSize);
+        }
+        return String.format(context.getString(R.string.pref_storage_compaction_summary_format),
+                currentSize,
+                Formatter.formatShortFileSize(context, PreferencesUtils.getRealmCompactionBeforeSize(context)),
+                Formatter.formatShortFileSize(context, PreferencesUtils.getRealmCompactedSize(context)),
+                PreferencesUtils.getRealmCompactionDuration(context));
+    }
+}
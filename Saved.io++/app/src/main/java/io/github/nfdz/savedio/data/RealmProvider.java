@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2017 Noe Fernandez
+ */
+package io.github.nfdz.savedio.data;
+
+import android.content.Context;
+import android.os.SystemClock;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import io.realm.Realm;
+import io.realm.RealmConfiguration;
+import timber.log.Timber;
+
+/**
+ * This class holds the application realm configuration and it is the only place where realm
+ * instances are opened and closed. Realm keeps a reference counted instance for each thread,
+ * this class counts them too in order to log open instances and detect leaks.
+ */
+public class RealmProvider {
+
+    /** A thread holding more instances than this probably is leaking them */
+    private static final int LEAK_WARNING_THRESHOLD = 5;
+
+    private static final String ARCHIVE_FILE_NAME = "archive.realm";
+
+    private static RealmConfiguration sConfig;
+    private static RealmConfiguration sArchiveConfig;
+    /** Number of open instances by thread name */
+    private static final Map<String, Integer> sOpenInstances = new HashMap<>();
+    private static int sTotalOpens = 0;
+
+    /**
+     * A task that needs a realm instance, it is used by background worker threads.
+     */
+    public interface Task<T> {
+        T execute(Realm realm) throws Exception;
+    }
+
+    /**
+     * Initializes realm and creates the application configuration. It has to be invoked once
+     * when application is created, before any instance is opened.
+     * @param context
+     */
+    synchronized public static void init(Context context) {
+        if (sConfig != null) return;
+        Realm.init(context);
+        sConfig = new RealmConfiguration.Builder()
+                .schemaVersion(SchemaMigration.SCHEMA_VERSION)
+                .migration(new SchemaMigration())
+                .build();
+        // archive file only contains bookmarks, it is created with the current schema version
+        // so any later migration step has to take into account that lists do not exist there
+        sArchiveConfig = new RealmConfiguration.Builder()
+                .name(ARCHIVE_FILE_NAME)
+                .modules(new ArchiveModule())
+                .schemaVersion(SchemaMigration.SCHEMA_VERSION)
+                .migration(new SchemaMigration())
+                .build();
+    }
+
+    /**
+     * Returns application realm configuration.
+     * @return RealmConfiguration
+     */
+    synchronized public static RealmConfiguration getConfiguration() {
+        if (sConfig == null) throw new IllegalStateException("Realm provider is not initialized.");
+        return sConfig;
+    }
+
+    /**
+     * Returns archive realm configuration, see BookmarkArchive.
+     * @return RealmConfiguration
+     */
+    synchronized public static RealmConfiguration getArchiveConfiguration() {
+        if (sArchiveConfig == null) throw new IllegalStateException("Realm provider is not initialized.");
+        return sArchiveConfig;
+    }
+
+    /**
+     * Opens a realm instance for the current thread. It has to be closed with close method.
+     * @return Realm
+     */
+    public static Realm open() {
+        return open(getConfiguration());
+    }
+
+    /**
+     * Opens an archive realm instance for the current thread. It has to be closed with close
+     * method.
+     * @return Realm
+     */
+    public static Realm openArchive() {
+        return open(getArchiveConfiguration());
+    }
+
+    private static Realm open(RealmConfiguration config) {
+        long start = SystemClock.elapsedRealtime();
+        Realm realm = Realm.getInstance(config);
+        long duration = SystemClock.elapsedRealtime() - start;
+        String thread = Thread.currentThread().getName();
+        int threadCount;
+        synchronized (RealmProvider.class) {
+            Integer count = sOpenInstances.get(thread);
+            threadCount = count == null ? 1 : count + 1;
+            sOpenInstances.put(thread, threadCount);
+            sTotalOpens++;
+        }
+        Timber.d("Realm " + config.getRealmFileName() + " opened in " + duration + " ms (" + thread + " holds " + threadCount + ").");
+        if (threadCount > LEAK_WARNING_THRESHOLD) {
+            Timber.w("Thread " + thread + " holds " + threadCount + " realm instances, they could be leaking.");
+        }
+        return realm;
+    }
+
+    /**
+     * Closes given realm instance that was opened with open method. Null is ignored.
+     * @param realm
+     */
+    public static void close(Realm realm) {
+        if (realm == null || realm.isClosed()) return;
+        realm.close();
+        String thread = Thread.currentThread().getName();
+        int threadCount;
+        synchronized (RealmProvider.class) {
+            Integer count = sOpenInstances.get(thread);
+            threadCount = count == null ? 0 : count - 1;
+            if (threadCount <= 0) {
+                sOpenInstances.remove(thread);
+            } else {
+                sOpenInstances.put(thread, threadCount);
+            }
+        }
+        Timber.d("Realm closed (" + thread + " holds " + threadCount + ").");
+    }
+
+    /**
+     * Opens a realm instance, executes given task with it and closes it. It is meant to be
+     * used from background worker threads.
+     * @param task
+     * @return task result.
+     * @throws Exception if task fails.
+     */
+    public static <T> T execute(Task<T> task) throws Exception {
+        return execute(getConfiguration(), task);
+    }
+
+    /**
+     * Opens an archive realm instance, executes given task with it and closes it. It is meant to
+     * be used from background worker threads.
+     * @param task
+     * @return task result.
+     * @throws Exception if task fails.
+     */
+    public static <T> T executeArchive(Task<T> task) throws Exception {
+        return execute(getArchiveConfiguration(), task);
+    }
+
+    private static <T> T execute(RealmConfiguration config, Task<T> task) throws Exception {
+        Realm realm = null;
+        try {
+            realm = open(config);
+            return task.execute(realm);
+        } finally {
+            close(realm);
+        }
+    }
+
+    /**
+     * Returns the number of realm instances opened with this class that are not closed yet.
+     * @return int open instances.
+     */
+    synchronized public static int getOpenInstanceCount() {
+        int total = 0;
+        for (Integer count : sOpenInstances.values()) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * Returns the number of realm instances opened with this class since the process started.
+     * @return int total opens.
+     */
+    synchronized public static int getTotalOpenCount() {
+        return sTotalOpens;
+    }
+}
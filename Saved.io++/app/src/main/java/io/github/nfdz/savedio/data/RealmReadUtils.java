@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2017 Noe Fernandez
+ */
+package io.github.nfdz.savedio.data;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.TextUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import io.github.nfdz.savedio.Callbacks;
+import io.github.nfdz.savedio.R;
+import io.github.nfdz.savedio.model.Bookmark;
+import io.github.nfdz.savedio.model.BookmarkList;
+import io.github.nfdz.savedio.model.serialization.BookmarkSerializer;
+import io.github.nfdz.savedio.model.serialization.SerializationException;
+import io.realm.Realm;
+
+/**
+ * This class contains static methods to read from realm persistence. Reads are performed in a
+ * background executor with its own realm instance and they never begin a write transaction, so
+ * they do not wait for the write lock. Callbacks are notified in main thread.
+ */
+public class RealmReadUtils {
+
+    private static final int READ_THREADS = 2;
+
+    private static final ExecutorService sReadExecutor = Executors.newFixedThreadPool(READ_THREADS);
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * A read operation performed with a background realm instance.
+     */
+    private interface Read<T> extends RealmProvider.Task<T> {
+        String getErrorMessage(Throwable th);
+    }
+
+    private static <T> Future<?> executeRead(final Read<T> read,
+                                             final Callbacks.OperationCallback<T> callback) {
+        return sReadExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                T result = null;
+                Throwable error = null;
+                try {
+                    result = RealmProvider.execute(read);
+                } catch (Throwable th) {
+                    error = th;
+                }
+                final T finalResult = result;
+                final Throwable finalError = error;
+                sMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (finalError == null) {
+                            callback.onSuccess(finalResult);
+                        } else {
+                            callback.onError(read.getErrorMessage(finalError), finalError);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Retrieves the names of bookmark lists asynchronously.
+     * @param callback to be notified, it will return a list of strings when success.
+     * @return future of the read.
+     */
+    public static Future<?> retrieveListNames(final Callbacks.OperationCallback<List<String>> callback) {
+        return executeRead(new Read<List<String>>() {
+            @Override
+            public List<String> execute(Realm realm) {
+                List<String> lists = new ArrayList<>();
+                List<BookmarkList> bookmarkLists = realm.where(BookmarkList.class).findAll();
+                for (BookmarkList list : bookmarkLists) {
+                    lists.add(list.getListName());
+                }
+                return lists;
+            }
+            @Override
+            public String getErrorMessage(Throwable th) {
+                return "There was an error retrieving bookmark lists.";
+            }
+        }, callback);
+    }
+
+    /**
+     * Retrieves bookmark lists asynchronously.
+     * @param callback to be notified, it will return unmanaged lists when success.
+     * @return future of the read.
+     */
+    public static Future<?> retrieveLists(final Callbacks.OperationCallback<List<BookmarkList>> callback) {
+        return executeRead(new Read<List<BookmarkList>>() {
+            @Override
+            public List<BookmarkList> execute(Realm realm) {
+                return realm.copyFromRealm(realm.where(BookmarkList.class).findAll());
+            }
+            @Override
+            public String getErrorMessage(Throwable th) {
+                return "There was an error retrieving bookmark lists.";
+            }
+        }, callback);
+    }
+
+    /**
+     * Counts the bookmarks of given list that are not deleted asynchronously.
+     * @param listName
+     * @param callback to be notified, it will return the number of bookmarks when success.
+     * @return future of the read.
+     */
+    public static Future<?> countListBookmarks(final String listName,
+                                               final Callbacks.OperationCallback<Long> callback) {
+        return executeRead(new Read<Long>() {
+            @Override
+            public Long execute(Realm realm) {
+                return realm.where(Bookmark.class)
+                        .equalTo(Bookmark.FIELD_DELETED, Bookmark.NOT_DELETED)
+                        .equalTo(Bookmark.FIELD_LIST, listName)
+                        .count();
+            }
+            @Override
+            public String getErrorMessage(Throwable th) {
+                return "There was an error counting bookmarks of list " + listName + ".";
+            }
+        }, callback);
+    }
+
+    /**
+     * Retrieves and serializes all stored bookmarks asynchronously.
+     * @param context
+     * @param callback
+     * @return future of the read.
+     */
+    public static Future<?> getSerializedBookmarks(final Context context,
+                                                   final Callbacks.OperationCallback<String> callback) {
+        return executeRead(new Read<String>() {
+            @Override
+            public String execute(Realm realm) throws SerializationException {
+                List<Bookmark> bookmarks = new ArrayList<>();
+                bookmarks.addAll(realm.where(Bookmark.class)
+                        .equalTo(Bookmark.FIELD_DELETED, Bookmark.NOT_DELETED)
+                        .findAll());
+                bookmarks.addAll(BookmarkArchive.getArchivedBookmarks());
+                String serializedBookmarks = BookmarkSerializer.serialize(bookmarks);
+                if (TextUtils.isEmpty(serializedBookmarks)) {
+                    throw new SerializationException(R.string.serialize_empty_error);
+                }
+                return serializedBookmarks;
+            }
+            @Override
+            public String getErrorMessage(Throwable th) {
+                if (th instanceof SerializationException) {
+                    return context.getString(((SerializationException) th).getMessageId());
+                } else {
+                    return context.getString(R.string.serialize_error);
+                }
+            }
+        }, callback);
+    }
+}
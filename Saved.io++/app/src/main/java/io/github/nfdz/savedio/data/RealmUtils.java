@@ -8,24 +8,22 @@ import android.content.Context;
 import android.text.TextUtils;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import io.github.nfdz.savedio.Callbacks;
-import io.github.nfdz.savedio.R;
 import io.github.nfdz.savedio.model.Bookmark;
-import io.github.nfdz.savedio.model.BookmarkClicksComparator;
 import io.github.nfdz.savedio.model.BookmarkList;
-import io.github.nfdz.savedio.model.serialization.BookmarkSerializer;
-import io.github.nfdz.savedio.model.serialization.SerializationException;
 import io.github.nfdz.savedio.widget.WidgetUtils;
 import io.realm.Realm;
 import io.realm.RealmAsyncTask;
-import io.realm.RealmResults;
 
 /**
- * This class contains static methods to ease work with realm persistence.
+ * This class contains static methods to ease write operations with realm persistence. Reads have
+ * to be performed with RealmReadUtils, that never waits for the write lock.
  */
 public class RealmUtils {
 
@@ -43,15 +41,8 @@ public class RealmUtils {
             @Override
             public void execute(Realm realm) {
                 Bookmark managedBookmark = realm.copyToRealm(bookmark);
-                String listName = managedBookmark.getListName();
-                if (!TextUtils.isEmpty(listName)) {
-                    BookmarkList list = realm.where(BookmarkList.class).equalTo(BookmarkList.FIELD_LIST_NAME, listName).findFirst();
-                    // ensure that this list exists in realm
-                    if (list == null) {
-                        list = realm.createObject(BookmarkList.class, listName);
-                    }
-                    list.getBookmarks().add(managedBookmark);
-                }
+                managedBookmark.renewSearchRevision();
+                addToList(realm, managedBookmark.getListName());
             }
         }, new Realm.Transaction.OnSuccess() {
             @Override
@@ -67,83 +58,250 @@ public class RealmUtils {
     }
 
     /**
-     * Cancels realm async task if it is not null and is not cancelled.
-     * @param asyncTransaction
+     * Adds several bookmarks to realm asynchronously in a single transaction. Bookmarks whose ID
+     * already exists in realm are skipped.
+     * @param realm it has to be initialized.
+     * @param bookmarks unmanaged objects that contain all information.
+     * @param callback to be notified, it will return if each bookmark was added (in the same
+     *                 order) when success.
+     * @return realm async task.
      */
-    public static void cancelAsyncTransaction(RealmAsyncTask asyncTransaction) {
-        if (asyncTransaction != null && !asyncTransaction.isCancelled()) {
-            asyncTransaction.cancel();
-        }
+    public static RealmAsyncTask addBookmarks(final Realm realm,
+                                              final Collection<Bookmark> bookmarks,
+                                              final Callbacks.OperationCallback<List<Boolean>> callback) {
+        final List<Boolean> results = new ArrayList<>(bookmarks.size());
+        return realm.executeTransactionAsync(new Realm.Transaction() {
+            @Override
+            public void execute(Realm realm) {
+                results.clear();
+                // each list is retrieved once per transaction
+                Map<String, BookmarkList> lists = new HashMap<>();
+                for (Bookmark bookmark : bookmarks) {
+                    boolean exists = realm.where(Bookmark.class)
+                            .equalTo(Bookmark.FIELD_ID, bookmark.getId())
+                            .count() > 0;
+                    if (exists) {
+                        results.add(false);
+                        continue;
+                    }
+                    realm.copyToRealm(bookmark).renewSearchRevision();
+                    String listName = bookmark.getListName();
+                    if (!TextUtils.isEmpty(listName)) {
+                        BookmarkList list = lists.get(listName);
+                        if (list == null) {
+                            list = getOrCreateList(realm, listName);
+                            lists.put(listName, list);
+                        }
+                        list.setBookmarkCount(list.getBookmarkCount() + 1);
+                    }
+                    results.add(true);
+                }
+            }
+        }, new Realm.Transaction.OnSuccess() {
+            @Override
+            public void onSuccess() {
+                callback.onSuccess(results);
+            }
+        }, new Realm.Transaction.OnError() {
+            @Override
+            public void onError(Throwable e) {
+                callback.onError("There was an error adding bookmarks", e);
+            }
+        });
     }
 
     /**
-     * Removes a bookmark from realm asynchronously.
+     * Updates a bookmark asynchronously in a single transaction. Only modified fields are written
+     * and the bookmark is moved to the new list if it changed. If edited bookmark has a different
+     * ID (assigned by server), a new bookmark is created with the same click information and the
+     * old one is marked as deleted, so it will be purged later.
      * @param realm it has to be initialized.
-     * @param bookmarkId id that will be removed.
-     * @param callback to be notified, it will return a copy of bookmark object when success.
+     * @param bookmarkId id of the bookmark that will be updated.
+     * @param edited unmanaged object with ID, title, URL, notes, list name and date.
+     * @param callback to be notified.
      * @return realm async task.
      */
-    public static RealmAsyncTask removeBookmark(Realm realm,
+    public static RealmAsyncTask updateBookmark(Realm realm,
                                                 final String bookmarkId,
-                                                final Callbacks.OperationCallback<Bookmark> callback) {
-        final AtomicReference<Bookmark> removedBookmark = new AtomicReference<>(null);
+                                                final Bookmark edited,
+                                                final Callbacks.OperationCallback<Void> callback) {
+        final AtomicBoolean found = new AtomicBoolean(false);
         return realm.executeTransactionAsync(new Realm.Transaction() {
             @Override
             public void execute(Realm realm) {
                 Bookmark bookmark = realm.where(Bookmark.class)
-                    .equalTo(Bookmark.FIELD_ID, bookmarkId)
-                    .findFirst();
-                Bookmark bookmarkToRemove = realm.copyFromRealm(bookmark);
-                String listName = bookmark.getListName();
-                bookmark.deleteFromRealm();
-                // if it was contained in a list, ensure that this list is not empty
-                if (!TextUtils.isEmpty(listName)) {
-                    BookmarkList list = realm.where(BookmarkList.class).equalTo(BookmarkList.FIELD_LIST_NAME, listName).findFirst();
-                    if (list != null && list.getBookmarks().size() == 0) {
-                        list.deleteFromRealm();
-                    }
+                        .equalTo(Bookmark.FIELD_ID, bookmarkId)
+                        .findFirst();
+                if (bookmark == null) return;
+                found.set(true);
+                String oldListName = bookmark.getListName();
+                if (!bookmarkId.equals(edited.getId())) {
+                    // realm primary key cannot be modified
+                    Bookmark newBookmark = realm.copyFromRealm(bookmark);
+                    newBookmark.setId(edited.getId());
+                    newBookmark.setDate(edited.getDate());
+                    bookmark.setDeletedAt(System.currentTimeMillis());
+                    bookmark = realm.copyToRealm(newBookmark);
+                    bookmark.renewSearchRevision();
+                }
+                if (!TextUtils.equals(bookmark.getTitle(), edited.getTitle())) {
+                    bookmark.setTitle(edited.getTitle());
+                }
+                if (!TextUtils.equals(bookmark.getUrl(), edited.getUrl())) {
+                    bookmark.setUrl(edited.getUrl());
+                }
+                if (!TextUtils.equals(bookmark.getNotes(), edited.getNotes())) {
+                    bookmark.setNotes(edited.getNotes());
+                }
+                if (!isSameList(oldListName, edited.getListName())) {
+                    bookmark.setListName(edited.getListName());
+                    removeFromList(realm, oldListName);
+                    addToList(realm, edited.getListName());
                 }
-                removedBookmark.set(bookmarkToRemove);
             }
         }, new Realm.Transaction.OnSuccess() {
             @Override
             public void onSuccess() {
-                callback.onSuccess(removedBookmark.get());
+                if (found.get()) {
+                    callback.onSuccess(null);
+                } else {
+                    callback.onError("There is no bookmark with that ID", null);
+                }
             }
         }, new Realm.Transaction.OnError() {
             @Override
             public void onError(Throwable e) {
-                callback.onError("There was an error removing", e);
+                callback.onError("There was an error updating", e);
             }
         });
     }
 
     /**
-     * Retrieves the names of bookmark lists asynchronously.
+     * Checks if given list names are the same list, empty and null names mean no list.
+     * @param listName
+     * @param otherListName
+     * @return true if they are the same list.
+     */
+    public static boolean isSameList(String listName, String otherListName) {
+        if (TextUtils.isEmpty(listName)) return TextUtils.isEmpty(otherListName);
+        return listName.equals(otherListName);
+    }
+
+    /**
+     * Increments the bookmark counter of given list, it creates the list if it does not exist.
+     * It has to be invoked inside a write transaction when a bookmark is added to the list.
+     * @param realm
+     * @param listName it could be empty (no list).
+     */
+    public static void addToList(Realm realm, String listName) {
+        if (TextUtils.isEmpty(listName)) return;
+        BookmarkList list = getOrCreateList(realm, listName);
+        list.setBookmarkCount(list.getBookmarkCount() + 1);
+    }
+
+    private static BookmarkList getOrCreateList(Realm realm, String listName) {
+        BookmarkList list = realm.where(BookmarkList.class)
+                .equalTo(BookmarkList.FIELD_LIST_NAME, listName)
+                .findFirst();
+        // ensure that this list exists in realm
+        if (list == null) {
+            list = realm.createObject(BookmarkList.class, listName);
+        }
+        return list;
+    }
+
+    /**
+     * Decrements the bookmark counter of given list, it removes the list if it gets empty.
+     * It has to be invoked inside a write transaction when a bookmark is removed from the list.
+     * @param realm
+     * @param listName it could be empty (no list).
+     */
+    public static void removeFromList(Realm realm, String listName) {
+        if (TextUtils.isEmpty(listName)) return;
+        BookmarkList list = realm.where(BookmarkList.class)
+                .equalTo(BookmarkList.FIELD_LIST_NAME, listName)
+                .findFirst();
+        if (list == null) return;
+        int count = list.getBookmarkCount() - 1;
+        if (count <= 0) {
+            list.deleteFromRealm();
+        } else {
+            list.setBookmarkCount(count);
+        }
+    }
+
+    /**
+     * Cancels realm async task if it is not null and is not cancelled.
+     * @param asyncTransaction
+     */
+    public static void cancelAsyncTransaction(RealmAsyncTask asyncTransaction) {
+        if (asyncTransaction != null && !asyncTransaction.isCancelled()) {
+            asyncTransaction.cancel();
+        }
+    }
+
+    /**
+     * Removes a bookmark asynchronously. It is marked as deleted (tombstone) and it will be
+     * purged later, so it can be restored until then.
+     * @param realm it has to be initialized.
+     * @param bookmarkId id that will be removed.
+     * @param callback to be notified.
+     * @return realm async task.
+     */
+    public static RealmAsyncTask removeBookmark(Realm realm,
+                                                final String bookmarkId,
+                                                final Callbacks.OperationCallback<Void> callback) {
+        return setDeletedAt(realm, bookmarkId, System.currentTimeMillis(), callback);
+    }
+
+    /**
+     * Restores a removed bookmark that has not been purged yet asynchronously.
      * @param realm it has to be initialized.
-     * @param callback to be notified, it will return a list of strings when success.
+     * @param bookmarkId id that will be restored.
+     * @param callback to be notified.
      * @return realm async task.
      */
-    public static RealmAsyncTask retrieveListNames(Realm realm,
-                                                   final Callbacks.OperationCallback<List<String>> callback) {
-        final List<String> lists = new ArrayList<>();
+    public static RealmAsyncTask restoreBookmark(Realm realm,
+                                                 final String bookmarkId,
+                                                 final Callbacks.OperationCallback<Void> callback) {
+        return setDeletedAt(realm, bookmarkId, Bookmark.NOT_DELETED, callback);
+    }
+
+    private static RealmAsyncTask setDeletedAt(Realm realm,
+                                               final String bookmarkId,
+                                               final long deletedAt,
+                                               final Callbacks.OperationCallback<Void> callback) {
+        final AtomicBoolean found = new AtomicBoolean(false);
         return realm.executeTransactionAsync(new Realm.Transaction() {
             @Override
             public void execute(Realm realm) {
-                List<BookmarkList> bookmarkLists = realm.where(BookmarkList.class).findAll();
-                for (BookmarkList list : bookmarkLists) {
-                    lists.add(list.getListName());
+                Bookmark bookmark = realm.where(Bookmark.class)
+                    .equalTo(Bookmark.FIELD_ID, bookmarkId)
+                    .findFirst();
+                if (bookmark == null) return;
+                found.set(true);
+                boolean deleted = deletedAt != Bookmark.NOT_DELETED;
+                if (bookmark.isDeleted() == deleted) return;
+                bookmark.setDeletedAt(deletedAt);
+                if (deleted) {
+                    removeFromList(realm, bookmark.getListName());
+                } else {
+                    addToList(realm, bookmark.getListName());
                 }
             }
         }, new Realm.Transaction.OnSuccess() {
             @Override
             public void onSuccess() {
-                callback.onSuccess(lists);
+                if (found.get()) {
+                    callback.onSuccess(null);
+                } else {
+                    callback.onError("There is no bookmark with that ID", null);
+                }
             }
         }, new Realm.Transaction.OnError() {
             @Override
             public void onError(Throwable e) {
-                callback.onError("There was an error retrieving bookmark lists.", e);
+                callback.onError("There was an error removing or restoring", e);
             }
         });
     }
@@ -228,21 +386,11 @@ public class RealmUtils {
     public static RealmAsyncTask markSmartFavorites(final Context context,
                                                     Realm realm,
                                                     final Callbacks.OperationCallback<Void> callback) {
+        final int capacity = PreferencesUtils.getSmartFavoritesSize(context);
         return realm.executeTransactionAsync(new Realm.Transaction() {
             @Override
             public void execute(Realm realm) {
-                List<Bookmark> bookmarks = realm.where(Bookmark.class).findAll();
-                List<Bookmark> clickedBookmarks = new ArrayList<Bookmark>();
-                for (Bookmark bm : bookmarks) {
-                    if (bm.getClickCounter() > 0) {
-                        clickedBookmarks.add(bm);
-                    }
-                }
-                Collections.sort(clickedBookmarks, new BookmarkClicksComparator());
-                for (int i = 0; i < clickedBookmarks.size() && i < 10; i++) {
-                    Bookmark bm = clickedBookmarks.get(i);
-                    bm.setFavorite(true);
-                }
+                SmartFavorites.rebuild(realm, capacity);
             }
         }, new Realm.Transaction.OnSuccess() {
             @Override
@@ -258,58 +406,6 @@ public class RealmUtils {
         });
     }
 
-    /**
-     * Increments click counter of given bookmark and sets its favorite flag to true if smart
-     * favorites is enabled and its clicks exceeds the clicks of any favorite bookmark.
-     * @param context
-     * @param realm
-     * @param bookmarkId
-     * @param callback
-     * @return realm async task.
-     */
-    public static RealmAsyncTask incrementClickCounter(final Context context,
-                                                       Realm realm,
-                                                       final String bookmarkId,
-                                                       final Callbacks.OperationCallback<Void> callback) {
-        return realm.executeTransactionAsync(new Realm.Transaction() {
-            @Override
-            public void execute(Realm realm) {
-                Bookmark bookmark = realm.where(Bookmark.class)
-                        .equalTo(Bookmark.FIELD_ID, bookmarkId)
-                        .findFirst();
-                bookmark.incrementClickCounter();
-                // if smart favorites, check if it has to modify favorite list
-                if (PreferencesUtils.getSmartFavoritesFlag(context) && !bookmark.isFavorite()) {
-                    List<Bookmark> favorites = realm.where(Bookmark.class)
-                                                    .equalTo(Bookmark.FIELD_FAVORITE, true)
-                                                    .findAll();
-                    if (favorites.size() < 10) {
-                        bookmark.setFavorite(true);
-                    } else {
-                        for (Bookmark bm : favorites) {
-                            if (bm.getClickCounter() < bookmark.getClickCounter()) {
-                                bm.setFavorite(false);
-                                bookmark.setFavorite(true);
-                                break;
-                            }
-                        }
-                    }
-                }
-            }
-        }, new Realm.Transaction.OnSuccess() {
-            @Override
-            public void onSuccess() {
-                callback.onSuccess(null);
-                WidgetUtils.updateFavWidgets(context);
-            }
-        }, new Realm.Transaction.OnError() {
-            @Override
-            public void onError(Throwable e) {
-                callback.onError("There was an error incrementing bookmark click counter.", e);
-            }
-        });
-    }
-
     /**
      * Sets list notification flag of given list name asynchronously.
      * @param realm
@@ -343,47 +439,4 @@ public class RealmUtils {
         });
     }
 
-    /**
-     * Retrieves and serializes all stored bookmarks asynchronously.
-     * @param realm
-     * @param context
-     * @param callback
-     * @return realm async task.
-     */
-    public static RealmAsyncTask getSerializedBookmarks(Realm realm,
-                                                        final Context context,
-                                                        final Callbacks.OperationCallback<String> callback) {
-        final AtomicReference<String> serializedBookmarks = new AtomicReference();
-        final AtomicReference<SerializationException> ex = new AtomicReference();
-        return realm.executeTransactionAsync(new Realm.Transaction() {
-            @Override
-            public void execute(Realm realm) {
-                RealmResults<Bookmark> bookmarks = realm.where(Bookmark.class).findAll();
-                try {
-                    serializedBookmarks.set(BookmarkSerializer.serialize(bookmarks));
-                } catch (SerializationException e) {
-                    ex.set(e);
-                }
-            }
-        }, new Realm.Transaction.OnSuccess() {
-            @Override
-            public void onSuccess() {
-                if (!TextUtils.isEmpty(serializedBookmarks.get())) {
-                    callback.onSuccess(serializedBookmarks.get());
-                } else {
-                    if (ex.get() != null) {
-                        callback.onError(context.getString(ex.get().getMessageId()), ex.get());
-                    } else {
-                        callback.onError(context.getString(R.string.serialize_empty_error), new Throwable());
-                    }
-                }
-            }
-        }, new Realm.Transaction.OnError() {
-            @Override
-            public void onError(Throwable e) {
-                callback.onError(context.getString(R.string.serialize_error), e);
-            }
-        });
-    }
-
 }
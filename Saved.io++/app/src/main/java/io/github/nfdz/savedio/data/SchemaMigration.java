@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2017 Noe Fernandez
+ */
+package io.github.nfdz.savedio.data;
+
+import io.github.nfdz.savedio.model.Bookmark;
+import io.github.nfdz.savedio.model.BookmarkList;
+import io.github.nfdz.savedio.utils.CollationUtils;
+import io.github.nfdz.savedio.utils.DateUtils;
+import io.github.nfdz.savedio.utils.SearchUtils;
+import io.realm.DynamicRealm;
+import io.realm.DynamicRealmObject;
+import io.realm.FieldAttribute;
+import io.realm.RealmMigration;
+import io.realm.RealmObjectSchema;
+import io.realm.RealmSchema;
+
+/**
+ * This class migrates realm schema from any previous version to the current one. Every schema
+ * change has to increment schema version and add its migration step here, so stored data is kept.
+ */
+public class SchemaMigration implements RealmMigration {
+
+    /**
+     * Current schema version.
+     * 0: initial schema.
+     * 1: bookmark favorite, list name and click counter fields are indexed.
+     * 2: bookmark has an indexed timestamp field with its date in epoch milliseconds.
+     * 3: bookmark has a folded search text field.
+     * 4: bookmark has an indexed frecency field.
+     * 5: list membership is only stored in bookmarks and lists have a bookmark counter.
+     * 6: bookmark has an indexed deletion time field (tombstone).
+     * 7: bookmark has a title sort key field.
+     * 8: bookmark has a search revision field.
+     *
+     * Archive realm file only contains bookmarks and it is created with version 5 at least.
+     */
+    public static final long SCHEMA_VERSION = 8;
+
+    private static final String BOOKMARK_CLASS = "Bookmark";
+    private static final String LIST_CLASS = "BookmarkList";
+    private static final String LIST_BOOKMARKS_FIELD = "mBookmarks";
+
+    @Override
+    public void migrate(DynamicRealm realm, long oldVersion, long newVersion) {
+        RealmSchema schema = realm.getSchema();
+        long version = oldVersion;
+        if (version == 0) {
+            migrateToVersion1(schema);
+            version++;
+        }
+        if (version == 1) {
+            migrateToVersion2(schema);
+            version++;
+        }
+        if (version == 2) {
+            migrateToVersion3(schema);
+            version++;
+        }
+        if (version == 3) {
+            migrateToVersion4(schema);
+            version++;
+        }
+        if (version == 4) {
+            migrateToVersion5(realm, schema);
+            version++;
+        }
+        if (version == 5) {
+            migrateToVersion6(schema);
+            version++;
+        }
+        if (version == 6) {
+            migrateToVersion7(schema);
+            version++;
+        }
+        if (version == 7) {
+            migrateToVersion8(schema);
+            version++;
+        }
+        if (version != newVersion) {
+            throw new IllegalStateException("There is no migration from schema version " + version +
+                    " to version " + newVersion + ".");
+        }
+    }
+
+    private static void migrateToVersion1(RealmSchema schema) {
+        RealmObjectSchema bookmarkSchema = schema.get(BOOKMARK_CLASS);
+        addIndex(bookmarkSchema, Bookmark.FIELD_FAVORITE);
+        addIndex(bookmarkSchema, Bookmark.FIELD_LIST);
+        addIndex(bookmarkSchema, Bookmark.FIELD_CLICKS);
+    }
+
+    private static void migrateToVersion2(RealmSchema schema) {
+        schema.get(BOOKMARK_CLASS)
+                .addField(Bookmark.FIELD_TIMESTAMP, long.class, FieldAttribute.INDEXED)
+                .transform(new RealmObjectSchema.Function() {
+                    @Override
+                    public void apply(DynamicRealmObject bookmark) {
+                        String date = bookmark.getString(Bookmark.FIELD_DATE);
+                        bookmark.setLong(Bookmark.FIELD_TIMESTAMP, DateUtils.parseDate(date));
+                    }
+                });
+    }
+
+    private static void migrateToVersion3(RealmSchema schema) {
+        schema.get(BOOKMARK_CLASS)
+                .addField(Bookmark.FIELD_SEARCH, String.class)
+                .transform(new RealmObjectSchema.Function() {
+                    @Override
+                    public void apply(DynamicRealmObject bookmark) {
+                        String searchText = SearchUtils.buildSearchText(bookmark.getString(Bookmark.FIELD_TITLE),
+                                bookmark.getString(Bookmark.FIELD_URL),
+                                bookmark.getString(Bookmark.FIELD_NOTE),
+                                bookmark.getString(Bookmark.FIELD_LIST));
+                        bookmark.setString(Bookmark.FIELD_SEARCH, searchText);
+                    }
+                });
+    }
+
+    private static void migrateToVersion4(RealmSchema schema) {
+        // time of previous clicks is unknown, assume that they are recent
+        final long now = System.currentTimeMillis();
+        schema.get(BOOKMARK_CLASS)
+                .addField(Bookmark.FIELD_FRECENCY, long.class, FieldAttribute.INDEXED)
+                .transform(new RealmObjectSchema.Function() {
+                    @Override
+                    public void apply(DynamicRealmObject bookmark) {
+                        int clicks = bookmark.getInt(Bookmark.FIELD_CLICKS);
+                        bookmark.setLong(Bookmark.FIELD_FRECENCY, Frecency.fromClicks(clicks, now));
+                    }
+                });
+    }
+
+    private static void migrateToVersion5(final DynamicRealm realm, RealmSchema schema) {
+        // bookmark list name is the membership that is kept, so count with it
+        schema.get(LIST_CLASS)
+                .addField(BookmarkList.FIELD_COUNT, int.class)
+                .transform(new RealmObjectSchema.Function() {
+                    @Override
+                    public void apply(DynamicRealmObject list) {
+                        long count = realm.where(BOOKMARK_CLASS)
+                                .equalTo(Bookmark.FIELD_LIST, list.getString(BookmarkList.FIELD_LIST_NAME))
+                                .count();
+                        list.setInt(BookmarkList.FIELD_COUNT, (int) count);
+                    }
+                })
+                .removeField(LIST_BOOKMARKS_FIELD);
+        realm.where(LIST_CLASS)
+                .equalTo(BookmarkList.FIELD_COUNT, 0)
+                .findAll()
+                .deleteAllFromRealm();
+    }
+
+    private static void migrateToVersion6(RealmSchema schema) {
+        schema.get(BOOKMARK_CLASS)
+                .addField(Bookmark.FIELD_DELETED, long.class, FieldAttribute.INDEXED);
+    }
+
+    private static void migrateToVersion7(RealmSchema schema) {
+        schema.get(BOOKMARK_CLASS)
+                .addField(Bookmark.FIELD_TITLE_SORT, String.class)
+                .transform(new RealmObjectSchema.Function() {
+                    @Override
+                    public void apply(DynamicRealmObject bookmark) {
+                        String title = bookmark.getString(Bookmark.FIELD_TITLE);
+                        bookmark.setString(Bookmark.FIELD_TITLE_SORT, CollationUtils.getSortKey(title));
+                    }
+                });
+    }
+
+    private static void migrateToVersion8(RealmSchema schema) {
+        // existing bookmarks are read by the first search index update anyway
+        schema.get(BOOKMARK_CLASS)
+                .addField(Bookmark.FIELD_SEARCH_REVISION, long.class);
+    }
+
+    private static void addIndex(RealmObjectSchema objectSchema, String field) {
+        if (!objectSchema.hasIndex(field)) objectSchema.addIndex(field);
+    }
+
+    // realm compares configurations when a file is opened, so all migration instances are equal
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof SchemaMigration;
+    }
+
+    @Override
+    public int hashCode() {
+        return SchemaMigration.class.hashCode();
+    }
+}
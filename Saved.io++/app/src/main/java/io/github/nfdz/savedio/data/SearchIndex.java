@@ -0,0 +1,843 @@
+/*
+ * Copyright (C) 2017 Noe Fernandez
+ */
+package io.github.nfdz.savedio.data;
+
+import android.content.Context;
+import android.os.SystemClock;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+import io.github.nfdz.savedio.model.Bookmark;
+import io.github.nfdz.savedio.utils.SearchUtils;
+import io.realm.Realm;
+import io.realm.RealmResults;
+import timber.log.Timber;
+
+/**
+ * This class is an in-memory inverted index of bookmark search text (title, URL host and path,
+ * notes and list name). Search text is split in tokens and every token has a posting list with
+ * the dense ordinals of the bookmarks that contain it. Token lookups are prefix searches over the
+ * sorted suffixes of the vocabulary, so a search piece finds every token that contains it and not
+ * only the ones that start with it.
+ *
+ * Index is used to find candidates of a search, they have to be checked with the search text
+ * anyway (a search with separators could match separated tokens). When index is not up to date
+ * it does not return candidates, so searches never miss bookmarks.
+ *
+ * Index has a trigram index of the title and URL host of bookmarks too (see TrigramIndex). It
+ * is used to find bookmarks similar to a search when nothing matches it (for example, a search
+ * with typos).
+ *
+ * Index is updated incrementally in a background thread and it is persisted in a file that is
+ * memory mapped when application starts. Updates only read the bookmarks with a recent search
+ * revision (see Bookmark). Every change and insertion of main realm renews the revision, so the
+ * only changes that recent bookmarks miss are removals (archive moves, purges and synchronization)
+ * and they are detected by bookmark count. All bookmarks are read only when the index file cannot
+ * be loaded and when count does not match. Changes are prepared without blocking searches and
+ * applied at once holding the write lock.
+ *
+ * Index fields are only modified by the update thread holding the write lock, so update thread
+ * reads them without locking and searches read them holding the read lock.
+ */
+public class SearchIndex {
+
+    private static final String FILE_NAME = "search.index";
+    private static final int FILE_MAGIC = 0x53494458;
+    /** It has to be increased when file format or tokenization change */
+    private static final int FILE_VERSION = 4;
+    /** Size of magic, version and checksum, checksum is computed over the rest of the file */
+    private static final int FILE_HEADER_SIZE = 4 + 4 + 8;
+    private static final int CHECKSUM_CHUNK_SIZE = 64 * 1024;
+
+    private static final int INITIAL_DOC_CAPACITY = 256;
+    private static final int NOT_LOADED_VERSION = -1;
+    /** Suffix ranges shorter than this are sorted by insertion */
+    private static final int INSERTION_SORT_LENGTH = 16;
+
+    private static SearchIndex sInstance;
+
+    /**
+     * Creates the application index, loads it from file and updates it in background. It has to
+     * be invoked once when application is created, after realm provider is initialized.
+     * @param context
+     */
+    synchronized public static void init(Context context) {
+        if (sInstance != null) return;
+        sInstance = new SearchIndex(new File(context.getFilesDir(), FILE_NAME));
+        sInstance.loadAsync();
+        sInstance.update();
+    }
+
+    /**
+     * Returns the application index.
+     * @return SearchIndex
+     */
+    synchronized public static SearchIndex getInstance() {
+        if (sInstance == null) throw new IllegalStateException("Search index is not initialized.");
+        return sInstance;
+    }
+
+    /**
+     * The indexed data of a bookmark, it is prepared before applying changes.
+     */
+    private static class Document {
+
+        private final String mId;
+        private final long mTextHash;
+        private final Set<String> mTokens;
+        private final String mFuzzyText;
+        private final long[] mTrigrams;
+
+        private Document(Bookmark bookmark) {
+            String searchText = bookmark.getSearchText();
+            mId = bookmark.getId();
+            mTextHash = SearchUtils.hash(searchText);
+            mTokens = new HashSet<>(SearchUtils.tokenize(searchText));
+            mFuzzyText = SearchUtils.buildFuzzyText(bookmark.getTitle(), bookmark.getUrl());
+            mTrigrams = SearchUtils.trigrams(mFuzzyText);
+        }
+    }
+
+    private final File mFile;
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+    private final ReentrantReadWriteLock mLock = new ReentrantReadWriteLock();
+    private final AtomicBoolean mUpdateQueued = new AtomicBoolean(false);
+    /** Index is up to date when applied version is the last requested version */
+    private final AtomicInteger mRequestedVersion = new AtomicInteger(0);
+    private volatile int mAppliedVersion = NOT_LOADED_VERSION;
+    private boolean mChangedSinceSave = false;
+    /** If all bookmarks have been read, by this process or before saving the loaded file */
+    private boolean mFullySynced = false;
+    /** Greatest search revision of realm when it was read last time, it is saved in file */
+    private long mLastRevision = 0L;
+
+    /** Ordinal by bookmark ID */
+    private final Map<String, Integer> mOrdinals = new HashMap<>();
+    /** Bookmark ID by ordinal, it is null if ordinal is free */
+    private String[] mIds = new String[INITIAL_DOC_CAPACITY];
+    /** Search text hash by ordinal */
+    private long[] mTextHashes = new long[INITIAL_DOC_CAPACITY];
+    /** Token IDs by ordinal */
+    private int[][] mDocTokens = new int[INITIAL_DOC_CAPACITY][];
+    private int mOrdinalsEnd = 0;
+    private final PostingList mFreeOrdinals = new PostingList();
+
+    /** Token ID by token */
+    private final Map<String, Integer> mTokenIds = new HashMap<>();
+    private final List<String> mTokens = new ArrayList<>();
+    private final List<PostingList> mPostings = new ArrayList<>();
+
+    /** Typo tolerant search text by ordinal */
+    private final TrigramIndex mTrigrams = new TrigramIndex();
+
+    /**
+     * Suffixes of vocabulary in lexicographic order, every suffix is packed in a long as token ID
+     * (high bits) and offset. Tokens are never removed from vocabulary while the process lives.
+     */
+    private long[] mSuffixes = new long[0];
+
+    private SearchIndex(File file) {
+        mFile = file;
+    }
+
+    /**
+     * Requests an update of the index with the current content of realm. Index does not return
+     * candidates until the update is applied.
+     */
+    public void update() {
+        mRequestedVersion.incrementAndGet();
+        // pending update will read the last data anyway
+        if (!mUpdateQueued.compareAndSet(false, true)) return;
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mUpdateQueued.set(false);
+                final int version = mRequestedVersion.get();
+                try {
+                    long start = SystemClock.elapsedRealtime();
+                    int changed = RealmProvider.execute(new RealmProvider.Task<Integer>() {
+                        @Override
+                        public Integer execute(Realm realm) {
+                            return sync(realm);
+                        }
+                    });
+                    mAppliedVersion = version;
+                    Timber.d("Search index updated (" + changed + " changes) in " + (SystemClock.elapsedRealtime() - start) + " ms.");
+                } catch (Exception e) {
+                    Timber.e(e, "There was an error updating search index.");
+                }
+            }
+        });
+    }
+
+    /**
+     * Writes the index in its file asynchronously if it changed since last time.
+     */
+    public void persist() {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    save();
+                } catch (Exception e) {
+                    Timber.e(e, "There was an error saving search index.");
+                }
+            }
+        });
+    }
+
+    /**
+     * Checks if index is up to date with the last requested update.
+     * @return true if it is up to date.
+     */
+    public boolean isUpToDate() {
+        return mAppliedVersion == mRequestedVersion.get();
+    }
+
+    /**
+     * Finds the bookmarks that could match with given search. Every bookmark that matches is a
+     * candidate, but candidates have to be checked.
+     * @param foldedFilter search text folded with SearchUtils.
+     * @return array of bookmark IDs or null if index cannot be used for this search.
+     */
+    public String[] findCandidates(String foldedFilter) {
+        if (!isUpToDate()) return null;
+        List<String> pieces = SearchUtils.tokenize(foldedFilter);
+        if (pieces.isEmpty()) return null;
+        mLock.readLock().lock();
+        try {
+            BitSet candidates = null;
+            for (String piece : pieces) {
+                BitSet matches = findOrdinals(piece);
+                if (candidates == null) {
+                    candidates = matches;
+                } else {
+                    candidates.and(matches);
+                }
+                if (candidates.isEmpty()) break;
+            }
+            String[] ids = new String[candidates.cardinality()];
+            int i = 0;
+            for (int ordinal = candidates.nextSetBit(0); ordinal >= 0; ordinal = candidates.nextSetBit(ordinal + 1)) {
+                ids[i++] = mIds[ordinal];
+            }
+            return ids;
+        } finally {
+            mLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the bookmarks that are similar to given search, see TrigramIndex.
+     * @param foldedFilter search text folded with SearchUtils.
+     * @return edit distance by bookmark ID or null if index cannot be used for this search.
+     */
+    public Map<String, Integer> findSimilar(String foldedFilter) {
+        if (!isUpToDate()) return null;
+        mLock.readLock().lock();
+        try {
+            Map<Integer, Integer> distances = mTrigrams.findSimilar(foldedFilter);
+            if (distances == null) return null;
+            Map<String, Integer> similar = new HashMap<>();
+            for (Map.Entry<Integer, Integer> distance : distances.entrySet()) {
+                similar.put(mIds[distance.getKey()], distance.getValue());
+            }
+            return similar;
+        } finally {
+            mLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the ordinals of the bookmarks that contain a token that contains given piece.
+     */
+    private BitSet findOrdinals(String piece) {
+        BitSet ordinals = new BitSet(mOrdinalsEnd);
+        int low = 0;
+        int high = mSuffixes.length;
+        // first suffix that is not lower than piece
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compareSuffix(mSuffixes[mid], piece) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        for (int i = low; i < mSuffixes.length && suffixStartsWith(mSuffixes[i], piece); i++) {
+            mPostings.get(suffixTokenId(mSuffixes[i])).addTo(ordinals);
+        }
+        return ordinals;
+    }
+
+    private static long packSuffix(int tokenId, int offset) {
+        return ((long) tokenId << 32) | offset;
+    }
+
+    private static int suffixTokenId(long suffix) {
+        return (int) (suffix >>> 32);
+    }
+
+    private static int suffixOffset(long suffix) {
+        return (int) suffix;
+    }
+
+    private int compareSuffix(long suffix, String piece) {
+        String token = mTokens.get(suffixTokenId(suffix));
+        int offset = suffixOffset(suffix);
+        int length = Math.min(token.length() - offset, piece.length());
+        for (int i = 0; i < length; i++) {
+            int diff = token.charAt(offset + i) - piece.charAt(i);
+            if (diff != 0) return diff;
+        }
+        return (token.length() - offset) - piece.length();
+    }
+
+    private boolean suffixStartsWith(long suffix, String piece) {
+        return mTokens.get(suffixTokenId(suffix)).startsWith(piece, suffixOffset(suffix));
+    }
+
+    private int compareSuffixes(long suffixA, long suffixB) {
+        String tokenA = mTokens.get(suffixTokenId(suffixA));
+        String tokenB = mTokens.get(suffixTokenId(suffixB));
+        int offsetA = suffixOffset(suffixA);
+        int offsetB = suffixOffset(suffixB);
+        int length = Math.min(tokenA.length() - offsetA, tokenB.length() - offsetB);
+        for (int i = 0; i < length; i++) {
+            int diff = tokenA.charAt(offsetA + i) - tokenB.charAt(offsetB + i);
+            if (diff != 0) return diff;
+        }
+        return (tokenA.length() - offsetA) - (tokenB.length() - offsetB);
+    }
+
+    /**
+     * Creates the sorted suffixes of the tokens with IDs in given range.
+     */
+    private long[] buildSuffixes(int fromTokenId, int toTokenId) {
+        int count = 0;
+        for (int tokenId = fromTokenId; tokenId < toTokenId; tokenId++) {
+            count += mTokens.get(tokenId).length();
+        }
+        long[] suffixes = new long[count];
+        int suffix = 0;
+        for (int tokenId = fromTokenId; tokenId < toTokenId; tokenId++) {
+            for (int offset = 0; offset < mTokens.get(tokenId).length(); offset++) {
+                suffixes[suffix++] = packSuffix(tokenId, offset);
+            }
+        }
+        sortSuffixes(suffixes, new long[count], 0, count);
+        return suffixes;
+    }
+
+    /**
+     * Sorts given range of suffixes with a merge sort over the primitive array.
+     */
+    private void sortSuffixes(long[] suffixes, long[] buffer, int from, int to) {
+        if (to - from <= INSERTION_SORT_LENGTH) {
+            for (int i = from + 1; i < to; i++) {
+                long suffix = suffixes[i];
+                int j = i - 1;
+                while (j >= from && compareSuffixes(suffixes[j], suffix) > 0) {
+                    suffixes[j + 1] = suffixes[j];
+                    j--;
+                }
+                suffixes[j + 1] = suffix;
+            }
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        sortSuffixes(suffixes, buffer, from, mid);
+        sortSuffixes(suffixes, buffer, mid, to);
+        // halves could be in order already
+        if (compareSuffixes(suffixes[mid - 1], suffixes[mid]) <= 0) return;
+        System.arraycopy(suffixes, from, buffer, from, to - from);
+        int left = from;
+        int right = mid;
+        for (int i = from; i < to; i++) {
+            if (right >= to || (left < mid && compareSuffixes(buffer[left], buffer[right]) <= 0)) {
+                suffixes[i] = buffer[left++];
+            } else {
+                suffixes[i] = buffer[right++];
+            }
+        }
+    }
+
+    /**
+     * Merges two sorted arrays of suffixes.
+     */
+    private long[] mergeSuffixes(long[] suffixesA, long[] suffixesB) {
+        long[] merged = new long[suffixesA.length + suffixesB.length];
+        int a = 0;
+        int b = 0;
+        for (int i = 0; i < merged.length; i++) {
+            if (b >= suffixesB.length || (a < suffixesA.length && compareSuffixes(suffixesA[a], suffixesB[b]) <= 0)) {
+                merged[i] = suffixesA[a++];
+            } else {
+                merged[i] = suffixesB[b++];
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Reads the bookmarks of realm that changed since last time and applies their changes.
+     * @return number of indexed and removed bookmarks.
+     */
+    private int sync(Realm realm) {
+        long count = realm.where(Bookmark.class)
+                .equalTo(Bookmark.FIELD_DELETED, Bookmark.NOT_DELETED)
+                .count();
+        Number lastRevision = realm.where(Bookmark.class).max(Bookmark.FIELD_SEARCH_REVISION);
+        List<Document> documents = new ArrayList<>();
+        Set<String> removedIds = new HashSet<>();
+        if (mFullySynced) {
+            // revisions are assigned inside main realm transactions, which are serialized, so
+            // bookmarks revised later than the last read revision were not committed then
+            RealmResults<Bookmark> recent = realm.where(Bookmark.class)
+                    .greaterThan(Bookmark.FIELD_SEARCH_REVISION, mLastRevision)
+                    .findAll();
+            readRecent(recent, documents, removedIds);
+        }
+        // recent bookmarks include every insertion, so a different count means removals
+        if (!mFullySynced || countAfter(documents, removedIds) != count) {
+            readAll(realm, !mFullySynced, documents, removedIds);
+        }
+        int changed = documents.size() + removedIds.size();
+        if (changed > 0) apply(documents, removedIds);
+        mLastRevision = lastRevision != null ? lastRevision.longValue() : 0L;
+        mFullySynced = true;
+        return changed;
+    }
+
+    /**
+     * Prepares the changes of given recently revised bookmarks.
+     */
+    private void readRecent(RealmResults<Bookmark> bookmarks, List<Document> documents, Set<String> removedIds) {
+        for (Bookmark bookmark : bookmarks) {
+            Integer ordinal = mOrdinals.get(bookmark.getId());
+            if (bookmark.isDeleted()) {
+                if (ordinal != null) removedIds.add(bookmark.getId());
+            } else if (ordinal == null || mTextHashes[ordinal] != SearchUtils.hash(bookmark.getSearchText())) {
+                documents.add(new Document(bookmark));
+            }
+        }
+    }
+
+    /**
+     * Prepares the changes of all bookmarks that are not indexed yet and of all indexed bookmarks
+     * that do not exist anymore. Given changes are kept.
+     * @param compareTexts true if search text of indexed bookmarks has to be checked too.
+     */
+    private void readAll(Realm realm, boolean compareTexts, List<Document> documents, Set<String> removedIds) {
+        Set<String> preparedIds = new HashSet<>();
+        for (Document document : documents) {
+            preparedIds.add(document.mId);
+        }
+        RealmResults<Bookmark> bookmarks = realm.where(Bookmark.class)
+                .equalTo(Bookmark.FIELD_DELETED, Bookmark.NOT_DELETED)
+                .findAll();
+        BitSet seen = new BitSet(mOrdinalsEnd);
+        for (Bookmark bookmark : bookmarks) {
+            String id = bookmark.getId();
+            Integer ordinal = mOrdinals.get(id);
+            if (ordinal != null) seen.set(ordinal);
+            if (preparedIds.contains(id)) continue;
+            if (ordinal == null ||
+                    (compareTexts && mTextHashes[ordinal] != SearchUtils.hash(bookmark.getSearchText()))) {
+                documents.add(new Document(bookmark));
+            }
+        }
+        for (int ordinal = 0; ordinal < mOrdinalsEnd; ordinal++) {
+            if (mIds[ordinal] != null && !seen.get(ordinal)) removedIds.add(mIds[ordinal]);
+        }
+    }
+
+    /**
+     * Computes the number of indexed bookmarks after applying given changes.
+     */
+    private int countAfter(List<Document> documents, Set<String> removedIds) {
+        int count = mOrdinals.size() - removedIds.size();
+        for (Document document : documents) {
+            if (!mOrdinals.containsKey(document.mId)) count++;
+        }
+        return count;
+    }
+
+    /**
+     * Applies given changes. New tokens are added to vocabulary first (they do not match anything
+     * yet) and their suffixes are sorted and merged without blocking searches, then documents are
+     * applied at once.
+     */
+    private void apply(List<Document> documents, Set<String> removedIds) {
+        Set<String> newTokens = new LinkedHashSet<>();
+        for (Document document : documents) {
+            for (String token : document.mTokens) {
+                if (!mTokenIds.containsKey(token)) newTokens.add(token);
+            }
+        }
+        int firstNewTokenId = mTokens.size();
+        long[] suffixes = mSuffixes;
+        if (!newTokens.isEmpty()) {
+            mLock.writeLock().lock();
+            try {
+                for (String token : newTokens) {
+                    addToken(token, new PostingList());
+                }
+            } finally {
+                mLock.writeLock().unlock();
+            }
+            suffixes = mergeSuffixes(mSuffixes, buildSuffixes(firstNewTokenId, mTokens.size()));
+        }
+        mLock.writeLock().lock();
+        try {
+            for (String id : removedIds) {
+                removeDocument(mOrdinals.get(id));
+            }
+            for (Document document : documents) {
+                Integer ordinal = mOrdinals.get(document.mId);
+                if (ordinal == null) {
+                    ordinal = addDocument(document.mId);
+                } else {
+                    removeTokens(ordinal);
+                }
+                addTokens(ordinal, document.mTokens);
+                mTrigrams.add(ordinal, document.mFuzzyText, document.mTrigrams);
+                mTextHashes[ordinal] = document.mTextHash;
+            }
+            mSuffixes = suffixes;
+            mChangedSinceSave = true;
+        } finally {
+            mLock.writeLock().unlock();
+        }
+    }
+
+    private int addDocument(String id) {
+        int ordinal = mFreeOrdinals.size() > 0 ? mFreeOrdinals.removeLast() : mOrdinalsEnd++;
+        if (ordinal >= mIds.length) {
+            int capacity = mIds.length * 2;
+            mIds = Arrays.copyOf(mIds, capacity);
+            mTextHashes = Arrays.copyOf(mTextHashes, capacity);
+            mDocTokens = Arrays.copyOf(mDocTokens, capacity);
+        }
+        mIds[ordinal] = id;
+        mOrdinals.put(id, ordinal);
+        return ordinal;
+    }
+
+    private void removeDocument(int ordinal) {
+        removeTokens(ordinal);
+        mTrigrams.remove(ordinal);
+        mOrdinals.remove(mIds[ordinal]);
+        mIds[ordinal] = null;
+        mFreeOrdinals.add(ordinal);
+    }
+
+    /**
+     * Adds given ordinal to the posting lists of given tokens, they have to be in vocabulary.
+     */
+    private void addTokens(int ordinal, Set<String> tokens) {
+        int[] tokenIds = new int[tokens.size()];
+        int i = 0;
+        for (String token : tokens) {
+            int tokenId = mTokenIds.get(token);
+            mPostings.get(tokenId).add(ordinal);
+            tokenIds[i++] = tokenId;
+        }
+        mDocTokens[ordinal] = tokenIds;
+    }
+
+    private void removeTokens(int ordinal) {
+        int[] tokenIds = mDocTokens[ordinal];
+        if (tokenIds == null) return;
+        for (int tokenId : tokenIds) {
+            mPostings.get(tokenId).remove(ordinal);
+        }
+        mDocTokens[ordinal] = null;
+    }
+
+    private int addToken(String token, PostingList postings) {
+        int tokenId = mTokens.size();
+        mTokens.add(token);
+        mPostings.add(postings);
+        mTokenIds.put(token, tokenId);
+        return tokenId;
+    }
+
+    private void loadAsync() {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    load();
+                } catch (Exception e) {
+                    Timber.w(e, "Search index file could not be loaded, it will be built again.");
+                    clear();
+                }
+            }
+        });
+    }
+
+    private void load() throws IOException {
+        if (!mFile.exists()) return;
+        mLock.writeLock().lock();
+        try {
+            readFile();
+        } finally {
+            mLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Reads the index from its memory mapped file as it was saved, so the first update only reads
+     * the bookmarks revised after saving it. File format: magic, version, checksum, last revision,
+     * ordinals end, then ID (or empty if ordinal is free), search text hash and fuzzy text of every
+     * ordinal, then the number of tokens and every token with its posting list, then the number of
+     * sorted suffixes and every suffix, then the number of trigrams and every trigram with its
+     * posting list. Strings are stored as length and chars.
+     */
+    private void readFile() throws IOException {
+        long start = SystemClock.elapsedRealtime();
+        RandomAccessFile file = new RandomAccessFile(mFile, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != FILE_MAGIC || buffer.getInt() != FILE_VERSION) {
+                Timber.d("Search index file is not compatible, it will be built again.");
+                return;
+            }
+            if (buffer.getLong() != checksum(buffer)) {
+                throw new IOException("Search index file checksum does not match.");
+            }
+            long lastRevision = buffer.getLong();
+            int ordinalsEnd = buffer.getInt();
+            int capacity = Math.max(INITIAL_DOC_CAPACITY, ordinalsEnd);
+            mIds = new String[capacity];
+            mTextHashes = new long[capacity];
+            mDocTokens = new int[capacity][];
+            mOrdinalsEnd = ordinalsEnd;
+            for (int ordinal = 0; ordinal < ordinalsEnd; ordinal++) {
+                String id = readString(buffer);
+                mTextHashes[ordinal] = buffer.getLong();
+                String fuzzyText = readString(buffer);
+                if (id.isEmpty()) {
+                    mFreeOrdinals.add(ordinal);
+                } else {
+                    mIds[ordinal] = id;
+                    mOrdinals.put(id, ordinal);
+                    mTrigrams.setText(ordinal, fuzzyText);
+                }
+            }
+            int[] docTokenCounts = new int[ordinalsEnd];
+            int tokenCount = buffer.getInt();
+            for (int tokenId = 0; tokenId < tokenCount; tokenId++) {
+                String token = readString(buffer);
+                PostingList postings = readPostings(buffer);
+                for (int i = 0; i < postings.size(); i++) {
+                    docTokenCounts[postings.get(i)]++;
+                }
+                addToken(token, postings);
+            }
+            // token IDs of every bookmark are inverted from posting lists
+            for (int ordinal = 0; ordinal < ordinalsEnd; ordinal++) {
+                if (mIds[ordinal] != null) mDocTokens[ordinal] = new int[docTokenCounts[ordinal]];
+                docTokenCounts[ordinal] = 0;
+            }
+            for (int tokenId = 0; tokenId < tokenCount; tokenId++) {
+                PostingList postings = mPostings.get(tokenId);
+                for (int i = 0; i < postings.size(); i++) {
+                    int ordinal = postings.get(i);
+                    mDocTokens[ordinal][docTokenCounts[ordinal]++] = tokenId;
+                }
+            }
+            long[] suffixes = new long[buffer.getInt()];
+            for (int i = 0; i < suffixes.length; i++) {
+                suffixes[i] = buffer.getLong();
+            }
+            mSuffixes = suffixes;
+            int trigramCount = buffer.getInt();
+            for (int i = 0; i < trigramCount; i++) {
+                long trigram = buffer.getLong();
+                mTrigrams.putPostings(trigram, readPostings(buffer));
+            }
+            mLastRevision = lastRevision;
+            mFullySynced = true;
+            Timber.d("Search index loaded (" + mOrdinals.size() + " bookmarks, " + tokenCount + " tokens) in " + (SystemClock.elapsedRealtime() - start) + " ms.");
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Writes the index in a temporary file and replaces the index file with it.
+     */
+    private void save() throws IOException {
+        if (!mChangedSinceSave) return;
+        long start = SystemClock.elapsedRealtime();
+        long size = FILE_HEADER_SIZE + 8 + 4;
+        for (int ordinal = 0; ordinal < mOrdinalsEnd; ordinal++) {
+            size += stringSize(mIds[ordinal]) + 8 + stringSize(mTrigrams.getText(ordinal));
+        }
+        // tokens without bookmarks are not saved, so saved token IDs are assigned again
+        int[] savedTokenIds = new int[mTokens.size()];
+        int tokenCount = 0;
+        size += 4;
+        for (int tokenId = 0; tokenId < mTokens.size(); tokenId++) {
+            int postingsSize = mPostings.get(tokenId).size();
+            if (postingsSize == 0) {
+                savedTokenIds[tokenId] = -1;
+                continue;
+            }
+            size += stringSize(mTokens.get(tokenId)) + 4 + 4L * postingsSize;
+            savedTokenIds[tokenId] = tokenCount++;
+        }
+        int suffixCount = 0;
+        for (long suffix : mSuffixes) {
+            if (savedTokenIds[suffixTokenId(suffix)] >= 0) suffixCount++;
+        }
+        size += 4 + 8L * suffixCount;
+        Map<Long, PostingList> trigramPostings = mTrigrams.getPostings();
+        size += 4;
+        for (PostingList postings : trigramPostings.values()) {
+            size += 8 + 4 + 4L * postings.size();
+        }
+        File tmpFile = new File(mFile.getPath() + ".tmp");
+        RandomAccessFile file = new RandomAccessFile(tmpFile, "rw");
+        try {
+            file.setLength(size);
+            MappedByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(FILE_MAGIC);
+            buffer.putInt(FILE_VERSION);
+            // checksum is written when the rest of the file is written
+            buffer.putLong(0L);
+            buffer.putLong(mLastRevision);
+            buffer.putInt(mOrdinalsEnd);
+            for (int ordinal = 0; ordinal < mOrdinalsEnd; ordinal++) {
+                writeString(buffer, mIds[ordinal]);
+                buffer.putLong(mTextHashes[ordinal]);
+                writeString(buffer, mTrigrams.getText(ordinal));
+            }
+            buffer.putInt(tokenCount);
+            for (int tokenId = 0; tokenId < mTokens.size(); tokenId++) {
+                if (savedTokenIds[tokenId] < 0) continue;
+                writeString(buffer, mTokens.get(tokenId));
+                writePostings(buffer, mPostings.get(tokenId));
+            }
+            // new token IDs keep the order of saved tokens, so suffixes are still sorted
+            buffer.putInt(suffixCount);
+            for (long suffix : mSuffixes) {
+                int savedTokenId = savedTokenIds[suffixTokenId(suffix)];
+                if (savedTokenId >= 0) buffer.putLong(packSuffix(savedTokenId, suffixOffset(suffix)));
+            }
+            buffer.putInt(trigramPostings.size());
+            for (Map.Entry<Long, PostingList> postings : trigramPostings.entrySet()) {
+                buffer.putLong(postings.getKey());
+                writePostings(buffer, postings.getValue());
+            }
+            buffer.position(FILE_HEADER_SIZE);
+            buffer.putLong(FILE_HEADER_SIZE - 8, checksum(buffer));
+            buffer.force();
+        } finally {
+            file.close();
+        }
+        if (!tmpFile.renameTo(mFile)) throw new IOException("Search index file could not be replaced.");
+        mChangedSinceSave = false;
+        Timber.d("Search index saved (" + size + " bytes) in " + (SystemClock.elapsedRealtime() - start) + " ms.");
+    }
+
+    private void clear() {
+        mLock.writeLock().lock();
+        try {
+            clearDocuments();
+        } finally {
+            mLock.writeLock().unlock();
+        }
+        mFullySynced = false;
+    }
+
+    private void clearDocuments() {
+        mOrdinals.clear();
+        mIds = new String[INITIAL_DOC_CAPACITY];
+        mTextHashes = new long[INITIAL_DOC_CAPACITY];
+        mDocTokens = new int[INITIAL_DOC_CAPACITY][];
+        mOrdinalsEnd = 0;
+        while (mFreeOrdinals.size() > 0) mFreeOrdinals.removeLast();
+        mTokenIds.clear();
+        mTokens.clear();
+        mPostings.clear();
+        mTrigrams.clear();
+        mSuffixes = new long[0];
+    }
+
+    private static int stringSize(String text) {
+        return 4 + 2 * (text == null ? 0 : text.length());
+    }
+
+    private static void writeString(ByteBuffer buffer, String text) {
+        if (text == null) text = "";
+        buffer.putInt(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            buffer.putChar(text.charAt(i));
+        }
+    }
+
+    private static void writePostings(ByteBuffer buffer, PostingList postings) {
+        buffer.putInt(postings.size());
+        for (int i = 0; i < postings.size(); i++) {
+            buffer.putInt(postings.get(i));
+        }
+    }
+
+    private static PostingList readPostings(ByteBuffer buffer) {
+        int size = buffer.getInt();
+        PostingList postings = new PostingList(size);
+        for (int i = 0; i < size; i++) {
+            postings.add(buffer.getInt());
+        }
+        return postings;
+    }
+
+    /**
+     * Computes the CRC32 of given buffer from its position to its limit, position is kept.
+     */
+    private static long checksum(ByteBuffer buffer) {
+        ByteBuffer content = buffer.duplicate();
+        CRC32 crc = new CRC32();
+        byte[] chunk = new byte[CHECKSUM_CHUNK_SIZE];
+        while (content.hasRemaining()) {
+            int length = Math.min(chunk.length, content.remaining());
+            content.get(chunk, 0, length);
+            crc.update(chunk, 0, length);
+        }
+        return crc.getValue();
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = buffer.getChar();
+        }
+        return new String(chars);
+    }
+}
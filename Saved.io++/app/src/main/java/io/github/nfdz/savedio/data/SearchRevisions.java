@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2017 Noe Fernandez
+ */
+package io.github.nfdz.savedio.data;
+
+import android.content.Context;
+
+/**
+ * This class assigns the search revisions of bookmarks (see Bookmark). Revisions are a counter
+ * that only grows and it does not depend on the clock, so changing the time of the device does
+ * not hide changes from search index.
+ *
+ * Counter is persisted in shared preferences by blocks: a block is reserved before its first
+ * revision is returned, so a revision is never returned twice although some of them are skipped
+ * when process dies.
+ */
+public class SearchRevisions {
+
+    private static final long BLOCK_SIZE = 1000L;
+
+    private static Context sContext;
+    private static long sLastRevision;
+    private static long sReservedRevision;
+
+    /**
+     * Initializes the counter with the last reserved revision. It has to be invoked once when
+     * application is created, before any bookmark is modified.
+     * @param context
+     */
+    synchronized public static void init(Context context) {
+        if (sContext != null) return;
+        sContext = context.getApplicationContext();
+        sReservedRevision = PreferencesUtils.getSearchRevisionsReserved(sContext);
+        sLastRevision = sReservedRevision;
+    }
+
+    /**
+     * Returns a new search revision, it is greater than any other revision returned before.
+     * @return revision.
+     */
+    synchronized public static long next() {
+        if (sContext == null) throw new IllegalStateException("Search revisions are not initialized.");
+        if (sLastRevision == sReservedRevision) {
+            PreferencesUtils.setSearchRevisionsReserved(sContext, sReservedRevision + BLOCK_SIZE);
+            sReservedRevision += BLOCK_SIZE;
+        }
+        return ++sLastRevision;
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2017 Noe Fernandez
+ */
+package io.github.nfdz.savedio.data;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import io.github.nfdz.savedio.model.BookmarkRows;
+
+/**
+ * This class caches the results of recent searches of the same content. When a search extends a
+ * previous one (the user keeps typing), it only has to filter the previous results. When a
+ * search is cached (the user deletes characters), it does not have to filter anything. Cached
+ * results are not valid anymore when content, sort or data change, so it has to be cleared
+ * then. It has to be used from main thread.
+ */
+public class SearchSession {
+
+    private static final int MAX_CACHED_SEARCHES = 10;
+
+    /** Results by folded filter, in access order */
+    private final Map<String, BookmarkRows> mResults =
+            new LinkedHashMap<String, BookmarkRows>(MAX_CACHED_SEARCHES, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, BookmarkRows> eldest) {
+                    return size() > MAX_CACHED_SEARCHES;
+                }
+            };
+
+    /** Results without filter, they are never discarded until session is cleared */
+    private BookmarkRows mContent;
+
+    private int mHits = 0;
+    private int mNarrowings = 0;
+    private int mMisses = 0;
+
+    /**
+     * Stores the results of given search.
+     * @param foldedFilter
+     * @param results immutable rows.
+     */
+    public void put(String foldedFilter, BookmarkRows results) {
+        if (foldedFilter.isEmpty()) {
+            mContent = results;
+        } else {
+            mResults.put(foldedFilter, results);
+        }
+    }
+
+    /**
+     * Returns the cached results of given search.
+     * @param foldedFilter
+     * @return results or null if they are not cached.
+     */
+    public BookmarkRows get(String foldedFilter) {
+        BookmarkRows results = foldedFilter.isEmpty() ? mContent : mResults.get(foldedFilter);
+        if (results != null) mHits++;
+        return results;
+    }
+
+    /**
+     * Returns the smallest cached results that contain all the results of given search, they are
+     * the results of a search contained in given search. Results without filter are not returned,
+     * search index is faster than filtering them. Results of searches that did not look in archive
+     * do not narrow searches that do.
+     * @param foldedFilter
+     * @return results to be filtered or null if there is not any.
+     */
+    public BookmarkRows getNarrowingSource(String foldedFilter) {
+        boolean searchesArchive = foldedFilter.length() >= BookmarkArchive.MIN_SEARCH_LENGTH;
+        BookmarkRows source = null;
+        for (Map.Entry<String, BookmarkRows> entry : mResults.entrySet()) {
+            if (searchesArchive && entry.getKey().length() < BookmarkArchive.MIN_SEARCH_LENGTH) continue;
+            if (foldedFilter.contains(entry.getKey()) &&
+                    (source == null || entry.getValue().size() < source.size())) {
+                source = entry.getValue();
+            }
+        }
+        if (source != null) {
+            mNarrowings++;
+        } else {
+            mMisses++;
+        }
+        return source;
+    }
+
+    /**
+     * Returns the cached results without filter.
+     * @return results or null if they are not cached.
+     */
+    public BookmarkRows getContent() {
+        return mContent;
+    }
+
+    /**
+     * Removes all cached results.
+     */
+    public void clear() {
+        mContent = null;
+        mResults.clear();
+    }
+
+    @Override
+    public String toString() {
+        return "SearchSession{hits=" + mHits + ", narrowings=" + mNarrowings + ", misses=" + mMisses + "}";
+    }
+}
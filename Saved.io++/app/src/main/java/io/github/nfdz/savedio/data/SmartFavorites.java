@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2017 Noe Fernandez
+ */
+package io.github.nfdz.savedio.data;
+
+import io.github.nfdz.savedio.model.Bookmark;
+import io.realm.Realm;
+import io.realm.RealmQuery;
+import io.realm.RealmResults;
+import io.realm.Sort;
+
+/**
+ * This class keeps the smart favorites, the top bookmarks by frecency. All operations are
+ * performed with indexed queries, so they only visit favorite bookmarks and never load the
+ * whole store. Its methods have to be invoked inside a write transaction.
+ */
+public class SmartFavorites {
+
+    /**
+     * Marks as favorites the bookmarks with higher frecency. It assumes that there is no favorite.
+     * @param realm
+     * @param capacity maximum number of smart favorites.
+     */
+    public static void rebuild(Realm realm, int capacity) {
+        RealmResults<Bookmark> mostClicked = realm.where(Bookmark.class)
+                .equalTo(Bookmark.FIELD_DELETED, Bookmark.NOT_DELETED)
+                .notEqualTo(Bookmark.FIELD_FRECENCY, Frecency.NONE)
+                .findAllSorted(Bookmark.FIELD_FRECENCY, Sort.DESCENDING);
+        int favorites = Math.min(capacity, mostClicked.size());
+        // copy them before modifying, realm results could change
+        Bookmark[] topBookmarks = new Bookmark[favorites];
+        for (int i = 0; i < favorites; i++) {
+            topBookmarks[i] = mostClicked.get(i);
+        }
+        for (Bookmark bookmark : topBookmarks) {
+            bookmark.setFavorite(true);
+        }
+    }
+
+    /**
+     * Updates smart favorites after the frecency of given bookmark was updated by a click. If
+     * there is room it is promoted, if not it replaces the favorite with lowest frecency when it
+     * has a higher one.
+     * @param realm
+     * @param bookmark managed bookmark.
+     * @param capacity maximum number of smart favorites.
+     */
+    public static void onClicked(Realm realm, Bookmark bookmark, int capacity) {
+        if (bookmark.isFavorite()) return;
+        long favorites = favoritesQuery(realm).count();
+        if (favorites < capacity) {
+            bookmark.setFavorite(true);
+        } else {
+            // only the lowest frecency is needed, favorites are not sorted
+            Number lowestFrecency = favoritesQuery(realm).min(Bookmark.FIELD_FRECENCY);
+            if (lowestFrecency == null || lowestFrecency.longValue() >= bookmark.getFrecency()) return;
+            Bookmark leastClicked = favoritesQuery(realm)
+                    .equalTo(Bookmark.FIELD_FRECENCY, lowestFrecency.longValue())
+                    .findFirst();
+            if (leastClicked == null) return;
+            leastClicked.setFavorite(false);
+            bookmark.setFavorite(true);
+        }
+    }
+
+    private static RealmQuery<Bookmark> favoritesQuery(Realm realm) {
+        return realm.where(Bookmark.class)
+                .equalTo(Bookmark.FIELD_DELETED, Bookmark.NOT_DELETED)
+                .equalTo(Bookmark.FIELD_FAVORITE, true);
+    }
+}
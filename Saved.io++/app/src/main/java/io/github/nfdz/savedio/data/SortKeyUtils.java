@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2017 Noe Fernandez
+ */
+package io.github.nfdz.savedio.data;
+
+import android.content.Context;
+import android.os.SystemClock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import io.github.nfdz.savedio.model.Bookmark;
+import io.github.nfdz.savedio.utils.CollationUtils;
+import io.realm.Realm;
+import io.realm.RealmResults;
+import timber.log.Timber;
+
+/**
+ * This class has static methods to keep stored sort keys up to date. Sort keys depend on the
+ * locale, so they are computed again when it changes.
+ */
+public class SortKeyUtils {
+
+    /** Bookmarks updated by transaction, archive lock is released between batches */
+    private static final int BATCH_SIZE = 500;
+
+    private static final ExecutorService sExecutor = Executors.newSingleThreadExecutor();
+
+    /**
+     * Computes again the sort keys of all bookmarks (main and archive realm) asynchronously if
+     * locale changed since last time.
+     * @param context
+     */
+    public static void updateIfLocaleChangedAsync(final Context context) {
+        final Context appContext = context.getApplicationContext();
+        sExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                String locale = CollationUtils.getSortKeyLocale();
+                String storedLocale = PreferencesUtils.getSortKeysLocale(appContext);
+                if (locale.equals(storedLocale)) return;
+                if (storedLocale.isEmpty()) {
+                    // schema migration and new bookmarks compute keys with current locale, and
+                    // this is checked when application starts, so they do not have to change
+                    PreferencesUtils.setSortKeysLocale(appContext, locale);
+                    return;
+                }
+                long start = SystemClock.elapsedRealtime();
+                try {
+                    int updated = updateSortKeys();
+                    PreferencesUtils.setSortKeysLocale(appContext, locale);
+                    Timber.i("Sort keys of " + updated + " bookmarks updated to locale " + locale + " in " + (SystemClock.elapsedRealtime() - start) + " ms.");
+                } catch (Exception e) {
+                    Timber.e(e, "There was an error updating sort keys.");
+                }
+            }
+        });
+    }
+
+    /**
+     * Computes again the sort keys of all bookmarks in batches. Bookmarks are identified when it
+     * starts and every batch updates them in the realm where they are, so a bookmark moved
+     * between realms meanwhile keeps its updated key or is updated where it was moved. Bookmarks
+     * created meanwhile have keys of current locale already.
+     * @return number of updated bookmarks.
+     */
+    private static int updateSortKeys() {
+        Realm realm = null;
+        Realm archive = null;
+        try {
+            realm = RealmProvider.open();
+            archive = RealmProvider.openArchive();
+            List<String> ids = new ArrayList<>();
+            synchronized (BookmarkArchive.LOCK) {
+                addIds(realm, ids);
+                addIds(archive, ids);
+            }
+            int updated = 0;
+            for (int from = 0; from < ids.size(); from += BATCH_SIZE) {
+                String[] batch = ids.subList(from, Math.min(ids.size(), from + BATCH_SIZE)).toArray(new String[0]);
+                synchronized (BookmarkArchive.LOCK) {
+                    updated += updateSortKeys(realm, batch) + updateSortKeys(archive, batch);
+                }
+            }
+            return updated;
+        } finally {
+            RealmProvider.close(archive);
+            RealmProvider.close(realm);
+        }
+    }
+
+    private static void addIds(Realm realm, List<String> ids) {
+        for (Bookmark bookmark : realm.where(Bookmark.class).findAll()) {
+            ids.add(bookmark.getId());
+        }
+    }
+
+    private static int updateSortKeys(Realm realm, String[] bookmarkIds) {
+        realm.beginTransaction();
+        try {
+            RealmResults<Bookmark> bookmarks = realm.where(Bookmark.class)
+                    .in(Bookmark.FIELD_ID, bookmarkIds)
+                    .findAll();
+            for (Bookmark bookmark : bookmarks) {
+                bookmark.updateTitleSortKey();
+            }
+            realm.commitTransaction();
+            return bookmarks.size();
+        } catch (RuntimeException e) {
+            realm.cancelTransaction();
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2017 Noe Fernandez
+ */
+package io.github.nfdz.savedio.data;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import io.github.nfdz.savedio.utils.SearchUtils;
+
+/**
+ * This class is a trigram index of the typo tolerant text of bookmarks (see
+ * SearchUtils.buildFuzzyText). It finds the bookmarks similar to a search: candidates are the
+ * bookmarks that share enough trigrams with the search, and they are similar if the edit distance
+ * between the search and some part of their text is low enough.
+ *
+ * Bookmarks are identified by their dense ordinals. It is not thread safe, search index guards it.
+ */
+class TrigramIndex {
+
+    /** Minimum ratio of search trigrams that a bookmark has to contain to be similar */
+    private static final float MIN_TRIGRAM_OVERLAP = 0.4f;
+    /** Maximum edit distance of similar bookmarks, it is relative to search length */
+    private static final int MAX_SIMILAR_DISTANCE = 3;
+    private static final int CHARS_BY_DISTANCE = 4;
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    /** Posting list by trigram, see SearchUtils.trigrams */
+    private final Map<Long, PostingList> mPostings = new HashMap<>();
+    /** Fuzzy text by ordinal, it is null if ordinal is not indexed */
+    private String[] mTexts = new String[INITIAL_CAPACITY];
+    private int mOrdinalsEnd = 0;
+
+    /**
+     * Indexes given text of given ordinal, it replaces its previous text.
+     * @param ordinal
+     * @param fuzzyText
+     */
+    void add(int ordinal, String fuzzyText) {
+        add(ordinal, fuzzyText, SearchUtils.trigrams(fuzzyText));
+    }
+
+    /**
+     * Indexes given text of given ordinal, it replaces its previous text.
+     * @param ordinal
+     * @param fuzzyText
+     * @param trigrams trigrams of given text, see SearchUtils.trigrams.
+     */
+    void add(int ordinal, String fuzzyText, long[] trigrams) {
+        remove(ordinal);
+        for (long trigram : trigrams) {
+            PostingList postings = mPostings.get(trigram);
+            if (postings == null) {
+                postings = new PostingList();
+                mPostings.put(trigram, postings);
+            }
+            postings.add(ordinal);
+        }
+        setText(ordinal, fuzzyText);
+    }
+
+    /**
+     * Sets the text of given ordinal without indexing its trigrams, it is used to load a stored
+     * index whose posting lists are loaded with putPostings.
+     * @param ordinal
+     * @param fuzzyText
+     */
+    void setText(int ordinal, String fuzzyText) {
+        if (ordinal >= mTexts.length) {
+            mTexts = Arrays.copyOf(mTexts, Math.max(mTexts.length * 2, ordinal + 1));
+        }
+        mTexts[ordinal] = fuzzyText;
+        mOrdinalsEnd = Math.max(mOrdinalsEnd, ordinal + 1);
+    }
+
+    /**
+     * Removes the text of given ordinal if it is indexed.
+     * @param ordinal
+     */
+    void remove(int ordinal) {
+        String text = getText(ordinal);
+        if (text == null) return;
+        // trigrams are extracted again instead of keeping them by ordinal
+        for (long trigram : SearchUtils.trigrams(text)) {
+            PostingList postings = mPostings.get(trigram);
+            if (postings == null) continue;
+            postings.remove(ordinal);
+            if (postings.size() == 0) mPostings.remove(trigram);
+        }
+        mTexts[ordinal] = null;
+    }
+
+    /**
+     * Returns the posting lists of indexed trigrams, they must not be modified.
+     * @return posting list by trigram.
+     */
+    Map<Long, PostingList> getPostings() {
+        return mPostings;
+    }
+
+    /**
+     * Sets the posting list of given trigram, it is used to load a stored index.
+     * @param trigram
+     * @param postings
+     */
+    void putPostings(long trigram, PostingList postings) {
+        mPostings.put(trigram, postings);
+    }
+
+    /**
+     * Returns the indexed text of given ordinal.
+     * @param ordinal
+     * @return fuzzy text or null if it is not indexed.
+     */
+    String getText(int ordinal) {
+        return ordinal < mTexts.length ? mTexts[ordinal] : null;
+    }
+
+    /**
+     * Finds the ordinals whose text is similar to given search.
+     * @param foldedFilter search text folded with SearchUtils.
+     * @return edit distance by ordinal or null if search has no trigrams.
+     */
+    Map<Integer, Integer> findSimilar(String foldedFilter) {
+        long[] trigrams = SearchUtils.trigrams(foldedFilter);
+        if (trigrams.length == 0) return null;
+        int[] overlaps = new int[mOrdinalsEnd];
+        for (long trigram : trigrams) {
+            PostingList postings = mPostings.get(trigram);
+            if (postings == null) continue;
+            for (int i = 0; i < postings.size(); i++) {
+                overlaps[postings.get(i)]++;
+            }
+        }
+        int minOverlap = Math.max(1, (int) Math.ceil(trigrams.length * MIN_TRIGRAM_OVERLAP));
+        int maxDistance = Math.max(1, Math.min(MAX_SIMILAR_DISTANCE, foldedFilter.length() / CHARS_BY_DISTANCE));
+        SearchUtils.DistancePattern pattern = new SearchUtils.DistancePattern(foldedFilter);
+        Map<Integer, Integer> similar = new HashMap<>();
+        for (int ordinal = 0; ordinal < mOrdinalsEnd; ordinal++) {
+            if (overlaps[ordinal] < minOverlap || mTexts[ordinal] == null) continue;
+            int distance = pattern.substringDistance(mTexts[ordinal]);
+            if (distance <= maxDistance) similar.put(ordinal, distance);
+        }
+        return similar;
+    }
+
+    /**
+     * Removes all indexed texts.
+     */
+    void clear() {
+        mPostings.clear();
+        mTexts = new String[INITIAL_CAPACITY];
+        mOrdinalsEnd = 0;
+    }
+}
@@ -3,7 +3,12 @@
  */
 package io.github.nfdz.savedio.model;
 
+import io.github.nfdz.savedio.data.SearchRevisions;
+import io.github.nfdz.savedio.utils.CollationUtils;
+import io.github.nfdz.savedio.utils.DateUtils;
+import io.github.nfdz.savedio.utils.SearchUtils;
 import io.realm.RealmObject;
+import io.realm.annotations.Index;
 import io.realm.annotations.PrimaryKey;
 
 /**
@@ -20,8 +25,18 @@ public class Bookmark extends RealmObject {
     public static final String FIELD_TITLE = "mTitle";
     public static final String FIELD_NOTE = "mNotes";
     public static final String FIELD_DATE = "mDate";
+    public static final String FIELD_TIMESTAMP = "mTimestamp";
     public static final String FIELD_LIST = "mListName";
     public static final String FIELD_FAVORITE = "mIsFavorite";
+    public static final String FIELD_CLICKS = "mClickCounter";
+    public static final String FIELD_FRECENCY = "mFrecency";
+    public static final String FIELD_SEARCH = "mSearchText";
+    public static final String FIELD_DELETED = "mDeletedAt";
+    public static final String FIELD_TITLE_SORT = "mTitleSortKey";
+    public static final String FIELD_SEARCH_REVISION = "mSearchRevision";
+
+    /** Deletion time of a bookmark that has not been deleted */
+    public static final long NOT_DELETED = 0L;
 
     @PrimaryKey
     private String mId;
@@ -34,34 +49,75 @@ public class Bookmark extends RealmObject {
 
     private String mDate;
 
+    /** Date in epoch milliseconds, it is always updated with "date" variable */
+    @Index
+    private long mTimestamp;
+
+    @Index
     private String mListName;
 
+    @Index
     private boolean mIsFavorite;
 
+    @Index
     private int mClickCounter;
 
+    /** Time decayed click score, see Frecency class */
+    @Index
+    private long mFrecency;
+
+    /** Folded title, URL, notes and list name, it is always updated with these variables */
+    private String mSearchText;
+
+    /**
+     * Revision of search text and deletion time, it is renewed when they change and when bookmark
+     * is inserted in main realm (see SearchRevisions), so search index only reads recently changed
+     * bookmarks
+     */
+    private long mSearchRevision;
+
+    /** Locale aware sort key of title, it is always updated with title, see CollationUtils */
+    private String mTitleSortKey;
+
+    /** Deletion time in epoch milliseconds, deleted bookmarks are kept until they are purged */
+    @Index
+    private long mDeletedAt;
+
     public void setId(String id) {
         mId = id;
     }
 
     public void setUrl(String url) {
         mUrl = url;
+        updateSearchText();
     }
 
     public void setTitle(String title) {
         mTitle = title;
+        mTitleSortKey = CollationUtils.getSortKey(title);
+        updateSearchText();
+    }
+
+    /**
+     * Computes title sort key again, it has to be invoked when locale changes.
+     */
+    public void updateTitleSortKey() {
+        mTitleSortKey = CollationUtils.getSortKey(mTitle);
     }
 
     public void setNotes(String notes) {
         mNotes = notes;
+        updateSearchText();
     }
 
     public void setDate(String date) {
         mDate = date;
+        mTimestamp = DateUtils.parseDate(date);
     }
 
     public void setListName(String listName) {
         mListName = listName;
+        updateSearchText();
     }
 
     public void setFavorite(boolean isFavorite) {
@@ -72,6 +128,19 @@ public class Bookmark extends RealmObject {
         mClickCounter = clickCounter;
     }
 
+    private void updateSearchText() {
+        mSearchText = SearchUtils.buildSearchText(mTitle, mUrl, mNotes, mListName);
+        renewSearchRevision();
+    }
+
+    /**
+     * Renews search revision. It has to be invoked inside the transaction that inserts this
+     * bookmark in main realm, so revisions of main realm grow in the order they are committed.
+     */
+    public void renewSearchRevision() {
+        mSearchRevision = SearchRevisions.next();
+    }
+
     public void incrementClickCounter() {
         setClickCounter(mClickCounter + 1);
     }
@@ -96,10 +165,22 @@ public class Bookmark extends RealmObject {
         return mDate;
     }
 
+    public long getTimestamp() {
+        return mTimestamp;
+    }
+
     public String getListName() {
         return mListName;
     }
 
+    public String getSearchText() {
+        return mSearchText;
+    }
+
+    public long getSearchRevision() {
+        return mSearchRevision;
+    }
+
     public boolean isFavorite() {
         return mIsFavorite;
     }
@@ -107,4 +188,25 @@ public class Bookmark extends RealmObject {
     public int getClickCounter() {
         return mClickCounter;
     }
+
+    public void setFrecency(long frecency) {
+        mFrecency = frecency;
+    }
+
+    public long getFrecency() {
+        return mFrecency;
+    }
+
+    public void setDeletedAt(long deletedAt) {
+        mDeletedAt = deletedAt;
+        renewSearchRevision();
+    }
+
+    public long getDeletedAt() {
+        return mDeletedAt;
+    }
+
+    public boolean isDeleted() {
+        return mDeletedAt != NOT_DELETED;
+    }
 }
@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2017 Noe Fernandez
+ */
+package io.github.nfdz.savedio.model;
+
+import io.github.nfdz.savedio.utils.URLUtils;
+
+/**
+ * This class is an immutable bookmark row that is ready to be shown. It is created on demand from
+ * BookmarkRows when the row is bound or clicked.
+ */
+public class BookmarkItem {
+
+    private final String mId;
+    private final String mTitle;
+    private final String mUrl;
+    private final String mFaviconPath;
+    private final boolean mIsFavorite;
+    private final boolean mIsArchived;
+
+    BookmarkItem(String id, String title, String rawUrl, boolean isFavorite, boolean isArchived) {
+        mId = id;
+        mTitle = title;
+        mUrl = URLUtils.processURL(rawUrl);
+        mFaviconPath = URLUtils.getFaviconPath(mUrl);
+        mIsFavorite = isFavorite;
+        mIsArchived = isArchived;
+    }
+
+    public String getId() {
+        return mId;
+    }
+
+    public String getTitle() {
+        return mTitle;
+    }
+
+    /** Processed URL, it is ready to be opened */
+    public String getUrl() {
+        return mUrl;
+    }
+
+    /** It could be null if URL has no favicon */
+    public String getFaviconPath() {
+        return mFaviconPath;
+    }
+
+    public boolean isFavorite() {
+        return mIsFavorite;
+    }
+
+    /** Archived bookmarks have to be restored before they are modified, see BookmarkArchive */
+    public boolean isArchived() {
+        return mIsArchived;
+    }
+}
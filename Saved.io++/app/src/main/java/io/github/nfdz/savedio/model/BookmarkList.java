@@ -4,23 +4,26 @@
 package io.github.nfdz.savedio.model;
 
 
-import io.realm.RealmList;
 import io.realm.RealmObject;
 import io.realm.annotations.PrimaryKey;
 
 /**
- * This class contains all fields of a list.
+ * This class contains all fields of a list. List membership is stored only in bookmarks (list
+ * name field), so bookmarks of a list are queried by its name. The number of bookmarks is
+ * maintained when bookmarks are added or removed.
  */
 public class BookmarkList extends RealmObject {
 
     // strings with the name of attributes to ease realm queries
     public static final String FIELD_LIST_NAME = "mListName";
     public static final String FIELD_NOTIFY = "mNotifyFlag";
+    public static final String FIELD_COUNT = "mBookmarkCount";
 
     @PrimaryKey
     private String mListName;
 
-    private RealmList<Bookmark> mBookmarks;
+    /** Number of bookmarks contained in this list */
+    private int mBookmarkCount;
 
     /** Notify new bookmarks flag */
     private boolean mNotifyFlag;
@@ -41,11 +44,11 @@ public class BookmarkList extends RealmObject {
         mListName = listName;
     }
 
-    public RealmList<Bookmark> getBookmarks() {
-        return mBookmarks;
+    public int getBookmarkCount() {
+        return mBookmarkCount;
     }
 
-    public void setBookmarks(RealmList<Bookmark> bookmarks) {
-        mBookmarks = bookmarks;
+    public void setBookmarkCount(int bookmarkCount) {
+        mBookmarkCount = bookmarkCount;
     }
 }
@@ -0,0 +1,294 @@
+/*
+ * Copyright (C) 2017 Noe Fernandez
+ */
+package io.github.nfdz.savedio.model;
+
+import android.text.TextUtils;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.github.nfdz.savedio.utils.SearchUtils;
+
+/**
+ * This class is an immutable snapshot of sorted bookmarks. Fields of all bookmarks are stored in
+ * columns (arrays) that are shared by all rows derived from the same snapshot, and filtered rows
+ * are only an array with the positions of their bookmarks in the columns. Bookmark items that are
+ * shown are created on demand, so only visible rows are materialized.
+ *
+ * Unlike realm objects, it can be created in a background thread and used in main thread.
+ * Rows could contain archived bookmarks (see BookmarkArchive), they are flagged.
+ */
+public class BookmarkRows {
+
+    /** Rows without bookmarks */
+    public static final BookmarkRows EMPTY = new BookmarkRows(new Columns(0), new int[0]);
+
+    /**
+     * Fields of all bookmarks of a snapshot.
+     */
+    private static class Columns {
+
+        private final String[] mIds;
+        private final long[] mStableIds;
+        private final String[] mTitles;
+        private final String[] mUrls;
+        private final String[] mSearchTexts;
+        private final boolean[] mFavorites;
+        private final int[] mClickCounters;
+        private final boolean[] mArchived;
+
+        private Columns(int size) {
+            mIds = new String[size];
+            mStableIds = new long[size];
+            mTitles = new String[size];
+            mUrls = new String[size];
+            mSearchTexts = new String[size];
+            mFavorites = new boolean[size];
+            mClickCounters = new int[size];
+            mArchived = new boolean[size];
+        }
+    }
+
+    private final Columns mColumns;
+    /** Position in columns of every row, it is null if rows are all columns in order */
+    private final int[] mPositions;
+    /** Row by bookmark ID, it is created on demand */
+    private Map<String, Integer> mRowsById;
+
+    private BookmarkRows(Columns columns, int[] positions) {
+        mColumns = columns;
+        mPositions = positions;
+    }
+
+    /**
+     * Creates a snapshot of given sorted bookmarks.
+     * @param bookmarks
+     * @return BookmarkRows
+     */
+    public static BookmarkRows fromBookmarks(List<Bookmark> bookmarks) {
+        return fromBookmarks(bookmarks, false);
+    }
+
+    /**
+     * Creates a snapshot of given sorted bookmarks.
+     * @param bookmarks
+     * @param archived true if bookmarks are from archive realm.
+     * @return BookmarkRows
+     */
+    public static BookmarkRows fromBookmarks(List<Bookmark> bookmarks, boolean archived) {
+        Builder builder = new Builder(bookmarks.size());
+        for (Bookmark bookmark : bookmarks) {
+            builder.add(bookmark.getId(),
+                    bookmark.getTitle(),
+                    bookmark.getUrl(),
+                    bookmark.getSearchText(),
+                    bookmark.isFavorite(),
+                    bookmark.getClickCounter(),
+                    archived);
+        }
+        return builder.build();
+    }
+
+    /**
+     * This class creates a snapshot adding its bookmarks one by one in order.
+     */
+    public static class Builder {
+
+        private final Columns mColumns;
+        private int mSize = 0;
+
+        /**
+         * @param size number of bookmarks that will be added.
+         */
+        public Builder(int size) {
+            mColumns = new Columns(size);
+        }
+
+        /**
+         * Adds a bookmark after the previous ones.
+         * @param id
+         * @param title
+         * @param url
+         * @param searchText see SearchUtils.buildSearchText.
+         * @param isFavorite
+         * @param clickCounter
+         * @param archived true if bookmark is in archive realm.
+         * @return this builder.
+         */
+        public Builder add(String id,
+                           String title,
+                           String url,
+                           String searchText,
+                           boolean isFavorite,
+                           int clickCounter,
+                           boolean archived) {
+            mColumns.mIds[mSize] = id;
+            mColumns.mStableIds[mSize] = SearchUtils.hash(id);
+            mColumns.mTitles[mSize] = title;
+            mColumns.mUrls[mSize] = url;
+            mColumns.mSearchTexts[mSize] = searchText;
+            mColumns.mFavorites[mSize] = isFavorite;
+            mColumns.mClickCounters[mSize] = clickCounter;
+            mColumns.mArchived[mSize] = archived;
+            mSize++;
+            return this;
+        }
+
+        public BookmarkRows build() {
+            if (mSize != mColumns.mIds.length) {
+                throw new IllegalStateException("Added " + mSize + " bookmarks of " + mColumns.mIds.length + ".");
+            }
+            return new BookmarkRows(mColumns, null);
+        }
+    }
+
+    /**
+     * Creates the rows with given rows of this one.
+     * @param rows rows of this one in the new order.
+     * @param size number of rows to take from given array.
+     * @return BookmarkRows
+     */
+    public BookmarkRows select(int[] rows, int size) {
+        int[] positions = new int[size];
+        for (int i = 0; i < size; i++) {
+            positions[i] = position(rows[i]);
+        }
+        return new BookmarkRows(mColumns, positions);
+    }
+
+    /**
+     * Creates the rows of this one that match given search filter, they keep their order. It
+     * checks every row.
+     * @param foldedFilter search text folded with SearchUtils.
+     * @return BookmarkRows
+     */
+    public BookmarkRows filter(String foldedFilter) {
+        int[] rows = new int[size()];
+        int size = 0;
+        for (int row = 0; row < size(); row++) {
+            if (matches(row, foldedFilter)) rows[size++] = row;
+        }
+        return select(rows, size);
+    }
+
+    /**
+     * Creates the rows of this one followed by given rows of other one.
+     * @param other
+     * @param rows rows of other one in the new order.
+     * @param size number of rows to take from given array.
+     * @return BookmarkRows
+     */
+    public BookmarkRows append(BookmarkRows other, int[] rows, int size) {
+        Columns columns = new Columns(size() + size);
+        for (int row = 0; row < size(); row++) {
+            copy(mColumns, position(row), columns, row);
+        }
+        for (int i = 0; i < size; i++) {
+            copy(other.mColumns, other.position(rows[i]), columns, size() + i);
+        }
+        return new BookmarkRows(columns, null);
+    }
+
+    private static void copy(Columns source, int sourcePosition, Columns target, int targetPosition) {
+        target.mIds[targetPosition] = source.mIds[sourcePosition];
+        target.mStableIds[targetPosition] = source.mStableIds[sourcePosition];
+        target.mTitles[targetPosition] = source.mTitles[sourcePosition];
+        target.mUrls[targetPosition] = source.mUrls[sourcePosition];
+        target.mSearchTexts[targetPosition] = source.mSearchTexts[sourcePosition];
+        target.mFavorites[targetPosition] = source.mFavorites[sourcePosition];
+        target.mClickCounters[targetPosition] = source.mClickCounters[sourcePosition];
+        target.mArchived[targetPosition] = source.mArchived[sourcePosition];
+    }
+
+    public int size() {
+        return mPositions != null ? mPositions.length : mColumns.mIds.length;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    private int position(int row) {
+        return mPositions != null ? mPositions[row] : row;
+    }
+
+    public String getId(int row) {
+        return mColumns.mIds[position(row)];
+    }
+
+    /** Numeric ID derived from bookmark ID, it can be used as recycler view stable ID */
+    public long getStableId(int row) {
+        return mColumns.mStableIds[position(row)];
+    }
+
+    /**
+     * Finds the row of given bookmark.
+     * @param id bookmark ID.
+     * @return row or -1 if bookmark is not in these rows.
+     */
+    synchronized public int indexOf(String id) {
+        if (mRowsById == null) {
+            mRowsById = new HashMap<>(size() * 2);
+            for (int row = 0; row < size(); row++) {
+                mRowsById.put(getId(row), row);
+            }
+        }
+        Integer row = mRowsById.get(id);
+        return row != null ? row : -1;
+    }
+
+    public boolean isFavorite(int row) {
+        return mColumns.mFavorites[position(row)];
+    }
+
+    public int getClickCounter(int row) {
+        return mColumns.mClickCounters[position(row)];
+    }
+
+    public boolean isArchived(int row) {
+        return mColumns.mArchived[position(row)];
+    }
+
+    /**
+     * Checks if given row matches with given search filter.
+     * @param row
+     * @param foldedFilter search text folded with SearchUtils.
+     * @return true if it matches.
+     */
+    public boolean matches(int row, String foldedFilter) {
+        String searchText = mColumns.mSearchTexts[position(row)];
+        return searchText != null && searchText.contains(foldedFilter);
+    }
+
+    /**
+     * Checks if given row of other rows shows the same content that given row of this one.
+     * @param row
+     * @param other
+     * @param otherRow
+     * @return true if title, URL and favorite flag are the same.
+     */
+    public boolean hasSameContent(int row, BookmarkRows other, int otherRow) {
+        int position = position(row);
+        int otherPosition = other.position(otherRow);
+        if (mColumns == other.mColumns && position == otherPosition) return true;
+        return mColumns.mFavorites[position] == other.mColumns.mFavorites[otherPosition] &&
+                TextUtils.equals(mColumns.mTitles[position], other.mColumns.mTitles[otherPosition]) &&
+                TextUtils.equals(mColumns.mUrls[position], other.mColumns.mUrls[otherPosition]);
+    }
+
+    /**
+     * Creates the item of given row to be shown.
+     * @param row
+     * @return BookmarkItem
+     */
+    public BookmarkItem getItem(int row) {
+        int position = position(row);
+        return new BookmarkItem(mColumns.mIds[position],
+                mColumns.mTitles[position],
+                mColumns.mUrls[position],
+                mColumns.mFavorites[position],
+                mColumns.mArchived[position]);
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2017 Noe Fernandez
+ */
+package io.github.nfdz.savedio.model;
+
+import android.content.Context;
+
+import io.github.nfdz.savedio.R;
+import io.realm.RealmQuery;
+import io.realm.RealmResults;
+import io.realm.Sort;
+
+/**
+ * This class describes a bookmark sort that is performed by realm. Favorite bookmarks are always
+ * first and then bookmarks are sorted by the key field.
+ */
+public class BookmarkSort {
+
+    /** The order is alphabetical (locale aware, ignoring case and accents) */
+    public static final BookmarkSort TITLE = new BookmarkSort(Bookmark.FIELD_TITLE_SORT, Sort.ASCENDING,
+            Bookmark.FIELD_TITLE, Sort.ASCENDING);
+
+    /** The order is from newest to oldest */
+    public static final BookmarkSort DATE_LAST = new BookmarkSort(Bookmark.FIELD_TIMESTAMP, Sort.DESCENDING);
+
+    /** The order is from oldest to newest */
+    public static final BookmarkSort DATE_OLD = new BookmarkSort(Bookmark.FIELD_TIMESTAMP, Sort.ASCENDING);
+
+    /** The order is from most to least used recently */
+    public static final BookmarkSort FRECENCY = new BookmarkSort(Bookmark.FIELD_FRECENCY, Sort.DESCENDING);
+
+    private final String[] mFieldNames;
+    private final Sort[] mSortOrders;
+
+    private BookmarkSort(String keyField, Sort keyOrder) {
+        mFieldNames = new String[] { Bookmark.FIELD_FAVORITE, keyField };
+        mSortOrders = new Sort[] { Sort.DESCENDING, keyOrder };
+    }
+
+    private BookmarkSort(String keyField, Sort keyOrder, String tieField, Sort tieOrder) {
+        mFieldNames = new String[] { Bookmark.FIELD_FAVORITE, keyField, tieField };
+        mSortOrders = new Sort[] { Sort.DESCENDING, keyOrder, tieOrder };
+    }
+
+    /**
+     * Finds all bookmarks of given query sorted with this sort.
+     * @param query
+     * @return sorted realm results.
+     */
+    public RealmResults<Bookmark> findAllSorted(RealmQuery<Bookmark> query) {
+        return query.findAllSorted(mFieldNames, mSortOrders);
+    }
+
+    /**
+     * Returns the sort that matches with given sort preference value.
+     * @param context
+     * @param sort preference value.
+     * @return BookmarkSort
+     */
+    public static BookmarkSort fromPreference(Context context, String sort) {
+        if (context.getString(R.string.pref_sort_date_last_key).equals(sort)) {
+            return DATE_LAST;
+        } else if (context.getString(R.string.pref_sort_date_old_key).equals(sort)) {
+            return DATE_OLD;
+        } else if (context.getString(R.string.pref_sort_frecency_key).equals(sort)) {
+            return FRECENCY;
+        } else {
+            return TITLE;
+        }
+    }
+}
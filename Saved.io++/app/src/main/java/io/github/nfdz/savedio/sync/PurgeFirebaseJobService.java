@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2017 Noe Fernandez
+ */
+package io.github.nfdz.savedio.sync;
+
+
+import android.os.AsyncTask;
+
+import com.firebase.jobdispatcher.JobParameters;
+import com.firebase.jobdispatcher.JobService;
+
+import timber.log.Timber;
+
+/**
+ * Purge of deleted bookmarks firebase job service implementation.
+ */
+public class PurgeFirebaseJobService extends JobService {
+
+    private AsyncTask<Void, Void, Void> mPurgeTask;
+
+    @Override
+    public boolean onStartJob(final JobParameters job) {
+        mPurgeTask = new AsyncTask<Void, Void, Void>() {
+            @Override
+            protected Void doInBackground(Void... params) {
+                try {
+                    PurgeUtils.purgeExpiredTombstones(PurgeFirebaseJobService.this);
+                } catch (Exception e) {
+                    Timber.e(e, "There was an error purging deleted bookmarks.");
+                }
+                return null;
+            }
+            @Override
+            protected void onPostExecute(Void v) {
+                jobFinished(job, false);
+            }
+        }.execute();
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters job) {
+        if (mPurgeTask != null) mPurgeTask.cancel(true);
+        return true;
+    }
+}
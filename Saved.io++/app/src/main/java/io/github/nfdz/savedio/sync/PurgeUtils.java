@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2017 Noe Fernandez
+ */
+package io.github.nfdz.savedio.sync;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.text.TextUtils;
+
+import com.firebase.jobdispatcher.Constraint;
+import com.firebase.jobdispatcher.Driver;
+import com.firebase.jobdispatcher.FirebaseJobDispatcher;
+import com.firebase.jobdispatcher.GooglePlayDriver;
+import com.firebase.jobdispatcher.Job;
+import com.firebase.jobdispatcher.Lifetime;
+import com.firebase.jobdispatcher.Trigger;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.github.nfdz.savedio.BuildConfig;
+import io.github.nfdz.savedio.data.PreferencesUtils;
+import io.github.nfdz.savedio.data.RealmProvider;
+import io.github.nfdz.savedio.model.Bookmark;
+import io.github.nfdz.savedio.sync.api.APIHelper;
+import io.realm.Realm;
+import io.realm.RealmResults;
+import retrofit2.Response;
+import timber.log.Timber;
+
+/**
+ * This class has static methods to purge deleted bookmarks (tombstones). Deleted bookmarks can be
+ * restored until they expire, then they are deleted in server (if there is a user API key) and
+ * removed from realm in batches.
+ */
+public class PurgeUtils {
+
+    /** Deleted bookmarks can be restored during this time */
+    public static final long TOMBSTONE_TTL_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    public static final long TOMBSTONE_TTL_SECONDS = TimeUnit.MILLISECONDS.toSeconds(TOMBSTONE_TTL_MILLIS);
+    public static final long PURGE_FLEXTIME_SECONDS = TOMBSTONE_TTL_SECONDS / 2;
+
+    private static final int PURGE_BATCH_SIZE = 100;
+
+    private static final String PURGE_TAG = "savediopp-purge";
+
+    /**
+     * Schedules a purge job that will run when current tombstones have expired.
+     * @param context
+     */
+    public static void schedulePurge(@NonNull Context context) {
+        Driver driver = new GooglePlayDriver(context);
+        FirebaseJobDispatcher dispatcher = new FirebaseJobDispatcher(driver);
+
+        Job.Builder builder = dispatcher.newJobBuilder()
+                .setService(PurgeFirebaseJobService.class)
+                .setTag(PURGE_TAG)
+                .setLifetime(Lifetime.UNTIL_NEXT_BOOT)
+                .setRecurring(false)
+                .setTrigger(Trigger.executionWindow(
+                        (int) TOMBSTONE_TTL_SECONDS,
+                        (int) TOMBSTONE_TTL_SECONDS + (int) PURGE_FLEXTIME_SECONDS))
+                .setReplaceCurrent(true);
+        // server deletion needs network
+        if (!TextUtils.isEmpty(PreferencesUtils.getUserAPIKey(context))) {
+            builder.setConstraints(Constraint.ON_ANY_NETWORK);
+        }
+
+        dispatcher.schedule(builder.build());
+    }
+
+    /**
+     * Deletes expired tombstones in server and removes them from realm in batches. Tombstones that
+     * could not be deleted in server are kept to be retried later. It works in a synchronous way.
+     * @param context
+     * @return number of purged bookmarks.
+     */
+    public static int purgeExpiredTombstones(@NonNull Context context) {
+        final long limit = System.currentTimeMillis() - TOMBSTONE_TTL_MILLIS;
+        String userKey = PreferencesUtils.getUserAPIKey(context);
+        APIHelper helper = TextUtils.isEmpty(userKey) ? null : new APIHelper();
+        int purged = 0;
+        Realm realm = null;
+        try {
+            realm = RealmProvider.open();
+            boolean exit = false;
+            while (!exit) {
+                RealmResults<Bookmark> expired = realm.where(Bookmark.class)
+                        .greaterThan(Bookmark.FIELD_DELETED, Bookmark.NOT_DELETED)
+                        .lessThan(Bookmark.FIELD_DELETED, limit)
+                        .findAll();
+                int batchSize = Math.min(expired.size(), PURGE_BATCH_SIZE);
+                final List<String> purgeableIds = new ArrayList<>(batchSize);
+                for (int i = 0; i < batchSize && !exit; i++) {
+                    String bookmarkId = expired.get(i).getId();
+                    if (helper == null || deleteInServer(helper, userKey, bookmarkId)) {
+                        purgeableIds.add(bookmarkId);
+                    } else {
+                        // retry this and the rest in next purge
+                        exit = true;
+                    }
+                }
+                if (purgeableIds.isEmpty()) break;
+                realm.executeTransaction(new Realm.Transaction() {
+                    @Override
+                    public void execute(Realm realm) {
+                        realm.where(Bookmark.class)
+                                .in(Bookmark.FIELD_ID, purgeableIds.toArray(new String[purgeableIds.size()]))
+                                .greaterThan(Bookmark.FIELD_DELETED, Bookmark.NOT_DELETED)
+                                .findAll()
+                                .deleteAllFromRealm();
+                    }
+                });
+                purged += purgeableIds.size();
+            }
+        } finally {
+            RealmProvider.close(realm);
+        }
+        Timber.d("Purged " + purged + " deleted bookmarks.");
+        return purged;
+    }
+
+    private static boolean deleteInServer(APIHelper helper, String userKey, String bookmarkId) {
+        try {
+            Response<Void> res = helper.getAPI()
+                    .deleteBookmark(BuildConfig.SAVEDIO_API_DEV_KEY, userKey, bookmarkId)
+                    .execute();
+            if (!res.isSuccessful()) {
+                Timber.d("Purge bookmark error (id=" + bookmarkId + "): " + res.raw().message());
+            }
+            return res.isSuccessful();
+        } catch (IOException e) {
+            Timber.d(e, "Purge bookmark error (id=" + bookmarkId + ")");
+            return false;
+        }
+    }
+}
@@ -12,11 +12,15 @@ import android.text.TextUtils;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import io.github.nfdz.savedio.BuildConfig;
 import io.github.nfdz.savedio.R;
+import io.github.nfdz.savedio.data.BookmarkArchive;
 import io.github.nfdz.savedio.data.PreferencesUtils;
+import io.github.nfdz.savedio.data.RealmProvider;
 import io.github.nfdz.savedio.model.Bookmark;
 import io.github.nfdz.savedio.model.BookmarkList;
 import io.github.nfdz.savedio.model.SyncResult;
@@ -41,8 +45,7 @@ public class SyncIntentService extends IntentService {
     protected void onHandleIntent(@Nullable Intent intent) {
         Realm realm = null;
         try {
-            Realm.init(this);
-            realm = Realm.getDefaultInstance();
+            realm = RealmProvider.open();
             syncBookmarks(this, realm);
             // TODO improve it in order to update only if a favorite bookmark was updated or removed
             WidgetUtils.updateFavWidgets(this);
@@ -53,7 +56,7 @@ public class SyncIntentService extends IntentService {
             result.setMessage(e.getMessage());
             realm.commitTransaction();
         } finally {
-            if (realm != null) realm.close();
+            RealmProvider.close(realm);
         }
     }
 
@@ -69,6 +72,9 @@ public class SyncIntentService extends IntentService {
             throw new SyncException(context.getString(R.string.sync_api_error));
         }
 
+        // deleted bookmarks that expired have to be deleted in server before retrieving
+        PurgeUtils.purgeExpiredTombstones(context);
+
         APIHelper helper = new APIHelper();
         final int limit = 50;
         final String noList = null;
@@ -113,22 +119,81 @@ public class SyncIntentService extends IntentService {
         } while(!exit);
 
 
-        List<String> allRetrievedBmsId = new ArrayList<>();
+        Set<String> allRetrievedBmsId = new HashSet<>();
         for (BookmarkAPI bm : allRetrievedBms) {
             allRetrievedBmsId.add(bm.id);
         }
 
+        // archived bookmarks are reconciled too, so nothing can be moved meanwhile
+        synchronized (BookmarkArchive.LOCK) {
+            Realm archive = null;
+            try {
+                archive = RealmProvider.openArchive();
+                saveBookmarks(context, realm, archive, allRetrievedBms, allRetrievedBmsId);
+            } finally {
+                if (archive != null && archive.isInTransaction()) archive.cancelTransaction();
+                RealmProvider.close(archive);
+            }
+        }
+    }
+
+    /**
+     * Updates the bookmark counter of given list with the bookmarks that are not deleted in main
+     * realm and the archived ones, it removes the list if it is empty. Both realms have to be in
+     * a write transaction.
+     */
+    private static void recountList(Realm realm, Realm archive, String listName) {
+        if (TextUtils.isEmpty(listName)) return;
+        BookmarkList list = realm.where(BookmarkList.class)
+                .equalTo(BookmarkList.FIELD_LIST_NAME, listName)
+                .findFirst();
+        if (list == null) return;
+        long count = realm.where(Bookmark.class)
+                .equalTo(Bookmark.FIELD_DELETED, Bookmark.NOT_DELETED)
+                .equalTo(Bookmark.FIELD_LIST, listName)
+                .count();
+        count += archive.where(Bookmark.class)
+                .equalTo(Bookmark.FIELD_LIST, listName)
+                .count();
+        if (count == 0) {
+            list.deleteFromRealm();
+        } else {
+            list.setBookmarkCount((int) count);
+        }
+    }
+
+    private static void saveBookmarks(Context context,
+                                      Realm realm,
+                                      Realm archive,
+                                      List<BookmarkAPI> allRetrievedBms,
+                                      Set<String> allRetrievedBmsId) {
         realm.beginTransaction();
+        archive.beginTransaction();
 
         // remove local bookmarks not contained in remote server
         List<Bookmark> removedBookmarks = new ArrayList<>();
+        Set<String> removedFromLists = new HashSet<>();
         List<Bookmark> localBookmarks = realm.where(Bookmark.class).findAll();
         for (Bookmark bookmark : localBookmarks) {
             if (!allRetrievedBmsId.contains(bookmark.getId())) {
                 removedBookmarks.add(bookmark);
+                removedFromLists.add(bookmark.getListName());
+                bookmark.deleteFromRealm();
+            }
+        }
+        List<Bookmark> archivedBookmarks = archive.where(Bookmark.class).findAll();
+        for (Bookmark bookmark : archivedBookmarks) {
+            if (!allRetrievedBmsId.contains(bookmark.getId())) {
+                removedBookmarks.add(bookmark);
+                removedFromLists.add(bookmark.getListName());
                 bookmark.deleteFromRealm();
             }
         }
+        // lists are counted again instead of decremented, so a removal that is repeated after an
+        // interrupted commit (see below) does not discount it twice
+        for (String listName : removedFromLists) {
+            recountList(realm, archive, listName);
+        }
 
         // create or update bookmarks
         List<Bookmark> createdBookmarks = new ArrayList<>();
@@ -137,6 +202,12 @@ public class SyncIntentService extends IntentService {
             Bookmark bookmark = realm.where(Bookmark.class)
                     .equalTo(Bookmark.FIELD_ID, bm.id)
                     .findFirst();
+            if (bookmark == null) {
+                // it could be archived, then it is updated there
+                bookmark = archive.where(Bookmark.class)
+                        .equalTo(Bookmark.FIELD_ID, bm.id)
+                        .findFirst();
+            }
             if (bookmark == null) {
                 // create a new bookmark
                 bookmark = realm.createObject(Bookmark.class, bm.id);
@@ -160,31 +231,20 @@ public class SyncIntentService extends IntentService {
             }
         }
 
-        // notify changes and purge empty lists
+        // notify changes of lists with notify flag (empty lists were purged when removing)
+        Set<String> changedLists = new HashSet<>();
+        for (Bookmark bookmark : createdBookmarks) {
+            if (!TextUtils.isEmpty(bookmark.getListName())) changedLists.add(bookmark.getListName());
+        }
+        for (Bookmark bookmark : updateBookmarks) {
+            if (!TextUtils.isEmpty(bookmark.getListName())) changedLists.add(bookmark.getListName());
+        }
         List<String> listsToNotify = new ArrayList<>();
-        List<BookmarkList> lists = realm.where(BookmarkList.class).findAll();
-        for (BookmarkList list : lists) {
-            if (list.getBookmarks().isEmpty()) {
-                list.deleteFromRealm();
-            } else if (list.getNotifyFlag()) {
-                // check if it contains any new or updated bookmark
-                boolean notify = false;
-                for (Bookmark bookmark : createdBookmarks) {
-                    if (list.getBookmarks().contains(bookmark)) {
-                        notify = true;
-                        break;
-                    }
-                }
-                if (!notify) {
-                    for (Bookmark bookmark : updateBookmarks) {
-                        if (list.getBookmarks().contains(bookmark)) {
-                            notify = true;
-                            break;
-                        }
-                    }
-                }
-                if (notify) listsToNotify.add(list.getListName());
-            }
+        for (String listName : changedLists) {
+            BookmarkList list = realm.where(BookmarkList.class)
+                    .equalTo(BookmarkList.FIELD_LIST_NAME, listName)
+                    .findFirst();
+            if (list != null && list.getNotifyFlag()) listsToNotify.add(listName);
         }
         NotificationUtils.notifyListChanges(context, listsToNotify);
 
@@ -199,8 +259,11 @@ public class SyncIntentService extends IntentService {
         result.setSuccess(true);
         result.setMessage(summary);
 
-        // commit data
+        // commit data, main realm first. If archive commit does not happen, next sync removes and
+        // updates archived bookmarks again, and it recounts their lists. If a bookmark is moved
+        // between realms meanwhile, its copy in archive is removed when archive is updated.
         realm.commitTransaction();
+        archive.commitTransaction();
 
         Timber.i("Bookmarks synchronization finished correctly. " + summary);
 
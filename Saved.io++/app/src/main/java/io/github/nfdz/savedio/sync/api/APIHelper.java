@@ -6,9 +6,17 @@ package io.github.nfdz.savedio.sync.api;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 
+import java.io.IOException;
+
 import io.github.nfdz.savedio.sync.api.SavedioAPI;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
 import retrofit2.Retrofit;
 import retrofit2.converter.gson.GsonConverterFactory;
+import timber.log.Timber;
 
 /**
  * This class helps to manage retrofit API object.
@@ -17,6 +25,9 @@ public class APIHelper {
 
     private static final String BASE_URL = "https://devapi.saved.io/";
 
+    /** HTTP client shared by all helpers so they reuse the same connection pool */
+    private static OkHttpClient sClient;
+
     public final SavedioAPI mAPI;
 
     public APIHelper() {
@@ -26,6 +37,7 @@ public class APIHelper {
 
         Retrofit retrofit = new Retrofit.Builder()
                 .baseUrl(BASE_URL)
+                .client(getClient())
                 .addConverterFactory(GsonConverterFactory.create(gson))
                 .build();
 
@@ -36,4 +48,33 @@ public class APIHelper {
         return mAPI;
     }
 
+    synchronized private static OkHttpClient getClient() {
+        if (sClient == null) sClient = new OkHttpClient();
+        return sClient;
+    }
+
+    /**
+     * Opens a connection with API host asynchronously (DNS lookup, TCP and TLS handshake) and
+     * keeps it in the shared connection pool, so the next API call does not have to wait for it.
+     */
+    public static void warmUpConnection() {
+        final long start = System.currentTimeMillis();
+        Request request = new Request.Builder()
+                .url(BASE_URL)
+                .head()
+                .build();
+        getClient().newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                Timber.d(e, "API connection warm up failed.");
+            }
+            @Override
+            public void onResponse(Call call, Response response) throws IOException {
+                // close body to release the connection back to the pool
+                response.body().close();
+                Timber.d("API connection warmed up in " + (System.currentTimeMillis() - start) + " ms.");
+            }
+        });
+    }
+
 }
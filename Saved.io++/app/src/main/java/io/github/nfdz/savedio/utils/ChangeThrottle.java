@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2017 Noe Fernandez
+ */
+package io.github.nfdz.savedio.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+/**
+ * This class coalesces bursts of change notifications (for example, realm notifications during a
+ * sync or an import) into at most one refresh per interval. The first change of a burst is
+ * delivered immediately and the rest are merged into a single refresh at the end of the interval,
+ * so the final state is always delivered. It has to be used from main thread.
+ */
+public class ChangeThrottle {
+
+    private final Handler mHandler;
+    private final long mIntervalMillis;
+    private final Runnable mRefresh;
+    private final Runnable mDelayedRefresh;
+
+    private long mLastRefreshTime = 0;
+    private boolean mRefreshPending = false;
+    private int mChangeCount = 0;
+    private int mRefreshCount = 0;
+
+    /**
+     * Constructor.
+     * @param intervalMillis minimum time between two refreshes.
+     * @param refresh action to be run in main thread.
+     */
+    public ChangeThrottle(long intervalMillis, Runnable refresh) {
+        mHandler = new Handler(Looper.getMainLooper());
+        mIntervalMillis = intervalMillis;
+        mRefresh = refresh;
+        mDelayedRefresh = new Runnable() {
+            @Override
+            public void run() {
+                mRefreshPending = false;
+                refresh();
+            }
+        };
+    }
+
+    /**
+     * Notifies a change, refresh is run now or it is scheduled at the end of the interval.
+     */
+    public void onChange() {
+        mChangeCount++;
+        if (mRefreshPending) return;
+        long elapsed = SystemClock.elapsedRealtime() - mLastRefreshTime;
+        if (elapsed >= mIntervalMillis) {
+            refresh();
+        } else {
+            mRefreshPending = true;
+            mHandler.postDelayed(mDelayedRefresh, mIntervalMillis - elapsed);
+        }
+    }
+
+    /**
+     * Discards the scheduled refresh if any.
+     */
+    public void cancel() {
+        mHandler.removeCallbacks(mDelayedRefresh);
+        mRefreshPending = false;
+    }
+
+    private void refresh() {
+        mLastRefreshTime = SystemClock.elapsedRealtime();
+        mRefreshCount++;
+        mRefresh.run();
+    }
+
+    /**
+     * Returns the number of notified changes.
+     * @return int changes.
+     */
+    public int getChangeCount() {
+        return mChangeCount;
+    }
+
+    /**
+     * Returns the number of changes that did not run a refresh because they were merged.
+     * @return int suppressed refreshes.
+     */
+    public int getSuppressedCount() {
+        return mChangeCount - mRefreshCount;
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2017 Noe Fernandez
+ */
+package io.github.nfdz.savedio.utils;
+
+import java.text.Collator;
+import java.util.Locale;
+
+/**
+ * This class contains static methods to sort texts in a locale aware way with precomputed keys.
+ */
+public class CollationUtils {
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private static Locale sLocale;
+    private static Collator sCollator;
+
+    /**
+     * Computes the sort key of given text with the collator of the default locale. Case and
+     * accents are ignored. Key is the collation key encoded in lowercase hexadecimal, so realm
+     * sorts keys in the same order as the collator sorts texts.
+     * @param text
+     * @return sort key.
+     */
+    synchronized public static String getSortKey(String text) {
+        Locale locale = Locale.getDefault();
+        if (sCollator == null || !locale.equals(sLocale)) {
+            sCollator = Collator.getInstance(locale);
+            // primary differences only, so case and accents are ignored
+            sCollator.setStrength(Collator.PRIMARY);
+            sLocale = locale;
+        }
+        byte[] key = sCollator.getCollationKey(text == null ? "" : text).toByteArray();
+        char[] hex = new char[key.length * 2];
+        for (int i = 0; i < key.length; i++) {
+            hex[i * 2] = HEX_DIGITS[(key[i] >> 4) & 0xf];
+            hex[i * 2 + 1] = HEX_DIGITS[key[i] & 0xf];
+        }
+        return new String(hex);
+    }
+
+    /**
+     * Returns the locale of sort keys, keys have to be computed again when it changes.
+     * @return String locale.
+     */
+    public static String getSortKeyLocale() {
+        return Locale.getDefault().toString();
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2017 Noe Fernandez
+ */
+package io.github.nfdz.savedio.utils;
+
+import android.text.TextUtils;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+import io.github.nfdz.savedio.model.Bookmark;
+
+/**
+ * This class contains static methods to convert bookmark dates between its serialized string
+ * format and epoch milliseconds. Date formats are cached per thread because they are expensive
+ * to create and they are not thread safe.
+ */
+public class DateUtils {
+
+    /** Timestamp used when a date cannot be parsed */
+    public static final long INVALID_TIMESTAMP = 0L;
+
+    private static final ThreadLocal<SimpleDateFormat> sDateFormat = new ThreadLocal<SimpleDateFormat>() {
+        @Override
+        protected SimpleDateFormat initialValue() {
+            return new SimpleDateFormat(Bookmark.DATE_FORMAT, Locale.US);
+        }
+    };
+
+    /**
+     * Formats given epoch milliseconds with bookmark date format.
+     * @param timestamp
+     * @return String date.
+     */
+    public static String formatDate(long timestamp) {
+        return sDateFormat.get().format(new Date(timestamp));
+    }
+
+    /**
+     * Parses given bookmark date.
+     * @param date with bookmark date format.
+     * @return epoch milliseconds or invalid timestamp if it cannot be parsed.
+     */
+    public static long parseDate(String date) {
+        if (TextUtils.isEmpty(date)) return INVALID_TIMESTAMP;
+        try {
+            return sDateFormat.get().parse(date).getTime();
+        } catch (ParseException e) {
+            return INVALID_TIMESTAMP;
+        }
+    }
+}
@@ -21,11 +21,10 @@ import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.List;
 import java.util.Scanner;
-import java.util.concurrent.atomic.AtomicInteger;
 
 import io.github.nfdz.savedio.Callbacks;
 import io.github.nfdz.savedio.R;
-import io.github.nfdz.savedio.data.RealmUtils;
+import io.github.nfdz.savedio.data.RealmReadUtils;
 import io.github.nfdz.savedio.model.Bookmark;
 import io.github.nfdz.savedio.model.serialization.BookmarkSerializer;
 import io.github.nfdz.savedio.model.serialization.SerializationException;
@@ -107,31 +106,21 @@ public class ImportExportUtils {
                     @Override
                     protected void onPostExecute(Void v) {
                         if (bookmarks != null) {
-                            final int bookmarksToImport = bookmarks.size();
-                            final AtomicInteger counter = new AtomicInteger(0);
-                            final AtomicInteger successCounter = new AtomicInteger(0);
-                            for (Bookmark bm : bookmarks) {
-                                TasksUtils.createBookmark(context, realm, bm, new Callbacks.OperationCallback<Void>() {
-                                    @Override
-                                    public void onSuccess(Void result) {
-                                        successCounter.incrementAndGet();
-                                        finish();
+                            TasksUtils.createBookmarks(context, realm, bookmarks, new Callbacks.OperationCallback<List<Boolean>>() {
+                                @Override
+                                public void onSuccess(List<Boolean> results) {
+                                    if (results.contains(false)) {
+                                        Toast.makeText(context, R.string.import_success_incomplete, Toast.LENGTH_LONG).show();
+                                    } else {
+                                        Toast.makeText(context, R.string.import_success, Toast.LENGTH_LONG).show();
                                     }
-                                    @Override
-                                    public void onError(String msg, Throwable th) {
-                                        finish();
-                                    }
-                                    private void finish() {
-                                        if (counter.incrementAndGet() == bookmarksToImport) {
-                                            if (successCounter.get() == counter.get()) {
-                                                Toast.makeText(context, R.string.import_success, Toast.LENGTH_LONG).show();
-                                            } else {
-                                                Toast.makeText(context, R.string.import_success_incomplete, Toast.LENGTH_LONG).show();
-                                            }
-                                        }
-                                    }
-                                });
-                            }
+                                }
+                                @Override
+                                public void onError(String msg, Throwable th) {
+                                    Timber.e(th, "There was an error importing bookmarks. " + msg);
+                                    Toast.makeText(context, R.string.import_success_incomplete, Toast.LENGTH_LONG).show();
+                                }
+                            });
                         } else {
                             Toast.makeText(context, context.getString(R.string.import_error_format, error), Toast.LENGTH_LONG).show();
                         }
@@ -170,20 +159,18 @@ public class ImportExportUtils {
      * @param requestCode
      * @param resultCode
      * @param resultData
-     * @param realm
      * @param context
      * @return true if activity result was managed by this method, false if not.
      */
     public static boolean onExportActivityResult(int requestCode,
                                                  final int resultCode,
                                                  Intent resultData,
-                                                 Realm realm,
                                                  final Context context) {
         if (requestCode == WRITE_REQUEST_CODE) {
             // URI to user document is contained in the return intent
             if (resultCode == Activity.RESULT_OK && resultData != null && resultData.getData() != null) {
                 final Uri uri = resultData.getData();
-                RealmUtils.getSerializedBookmarks(realm, context, new Callbacks.OperationCallback<String>() {
+                RealmReadUtils.getSerializedBookmarks(context, new Callbacks.OperationCallback<String>() {
                     @Override
                     public void onSuccess(final String serialized) {
                         // store it in the file
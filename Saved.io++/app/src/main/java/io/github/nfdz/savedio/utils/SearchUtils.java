@@ -0,0 +1,247 @@
+/*
+ * Copyright (C) 2017 Noe Fernandez
+ */
+package io.github.nfdz.savedio.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * This class contains static methods to ease bookmark searches.
+ */
+public class SearchUtils {
+
+    /** Separator of fields in search text, it cannot be typed in a search so no match crosses it */
+    private static final String FIELDS_SEPARATOR = "\n";
+
+    private static final String WWW_PREFIX = "www.";
+
+    /**
+     * Folds the case of given text. Search text and queries have to be folded with this method.
+     * @param text
+     * @return folded text, it is empty if given text is empty.
+     */
+    public static String fold(String text) {
+        if (text == null || text.isEmpty()) return "";
+        return text.toLowerCase(Locale.US);
+    }
+
+    /**
+     * Builds the folded text where bookmark searches are performed.
+     * @param title
+     * @param url
+     * @param notes
+     * @param listName
+     * @return search text.
+     */
+    public static String buildSearchText(String title, String url, String notes, String listName) {
+        return fold(title) + FIELDS_SEPARATOR +
+                fold(url) + FIELDS_SEPARATOR +
+                fold(notes) + FIELDS_SEPARATOR +
+                fold(listName);
+    }
+
+    /**
+     * Builds the folded text where typo tolerant searches are performed. It contains the title
+     * and the significant part of URL host (without www prefix and top level domain).
+     * @param title
+     * @param url
+     * @return fuzzy search text.
+     */
+    public static String buildFuzzyText(String title, String url) {
+        String host = fold(URLUtils.getHost(url));
+        if (host.startsWith(WWW_PREFIX)) host = host.substring(WWW_PREFIX.length());
+        int tldStart = host.lastIndexOf('.');
+        if (tldStart > 0) host = host.substring(0, tldStart);
+        return fold(title) + FIELDS_SEPARATOR + host;
+    }
+
+    /**
+     * Splits given folded text in tokens, they are the sequences of letters and digits.
+     * @param foldedText
+     * @return list of tokens, it could contain duplicates.
+     */
+    public static List<String> tokenize(String foldedText) {
+        List<String> tokens = new ArrayList<>();
+        if (foldedText == null || foldedText.isEmpty()) return tokens;
+        int start = -1;
+        for (int i = 0; i < foldedText.length(); i++) {
+            boolean isTokenChar = Character.isLetterOrDigit(foldedText.charAt(i));
+            if (isTokenChar && start < 0) {
+                start = i;
+            } else if (!isTokenChar && start >= 0) {
+                tokens.add(foldedText.substring(start, i));
+                start = -1;
+            }
+        }
+        if (start >= 0) tokens.add(foldedText.substring(start));
+        return tokens;
+    }
+
+    /**
+     * Extracts the trigrams of the tokens of given folded text. Tokens are padded with a space at
+     * both sides, so a token of one or two characters has trigrams too.
+     * @param foldedText
+     * @return sorted array of distinct trigrams, every trigram is packed in a long.
+     */
+    public static long[] trigrams(String foldedText) {
+        Set<Long> trigrams = new HashSet<>();
+        for (String token : tokenize(foldedText)) {
+            String padded = " " + token + " ";
+            for (int i = 0; i + 3 <= padded.length(); i++) {
+                trigrams.add(((long) padded.charAt(i) << 32) |
+                        ((long) padded.charAt(i + 1) << 16) |
+                        padded.charAt(i + 2));
+            }
+        }
+        long[] result = new long[trigrams.size()];
+        int i = 0;
+        for (Long trigram : trigrams) {
+            result[i++] = trigram;
+        }
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * Computes the minimum edit distance (Levenshtein) between given pattern and any substring
+     * of given text.
+     * @param pattern
+     * @param text
+     * @return number of insertions, deletions and substitutions.
+     */
+    public static int substringDistance(String pattern, String text) {
+        return new DistancePattern(pattern).substringDistance(text);
+    }
+
+    /**
+     * This class is a pattern prepared to compute its substring distance to many texts. Patterns
+     * up to 64 characters use the bit-parallel algorithm of Myers, where every column of the
+     * distance matrix is encoded as bit vectors of vertical differences, so each character of the
+     * text takes a few word operations. Longer patterns compute the matrix row by row.
+     */
+    public static class DistancePattern {
+
+        private static final int ASCII_SIZE = 128;
+
+        private final String mPattern;
+        /** Bit mask of the positions of every ASCII character in pattern */
+        private final long[] mAsciiMasks;
+        /** Non ASCII characters of pattern and their bit masks */
+        private final char[] mOtherChars;
+        private final long[] mOtherMasks;
+
+        public DistancePattern(String pattern) {
+            mPattern = pattern;
+            if (pattern.length() > Long.SIZE) {
+                mAsciiMasks = null;
+                mOtherChars = null;
+                mOtherMasks = null;
+                return;
+            }
+            mAsciiMasks = new long[ASCII_SIZE];
+            StringBuilder otherChars = new StringBuilder();
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = pattern.charAt(i);
+                if (c < ASCII_SIZE) {
+                    mAsciiMasks[c] |= 1L << i;
+                } else if (otherChars.indexOf(String.valueOf(c)) < 0) {
+                    otherChars.append(c);
+                }
+            }
+            mOtherChars = otherChars.toString().toCharArray();
+            mOtherMasks = new long[mOtherChars.length];
+            for (int i = 0; i < pattern.length(); i++) {
+                for (int j = 0; j < mOtherChars.length; j++) {
+                    if (pattern.charAt(i) == mOtherChars[j]) mOtherMasks[j] |= 1L << i;
+                }
+            }
+        }
+
+        private long mask(char c) {
+            if (c < ASCII_SIZE) return mAsciiMasks[c];
+            for (int i = 0; i < mOtherChars.length; i++) {
+                if (mOtherChars[i] == c) return mOtherMasks[i];
+            }
+            return 0L;
+        }
+
+        /**
+         * Computes the minimum edit distance between this pattern and any substring of given
+         * text.
+         * @param text
+         * @return number of insertions, deletions and substitutions.
+         */
+        public int substringDistance(String text) {
+            int length = mPattern.length();
+            if (length == 0) return 0;
+            if (mAsciiMasks == null) return substringDistanceByRows(mPattern, text);
+            long last = 1L << (length - 1);
+            long positives = -1L;
+            long negatives = 0L;
+            int score = length;
+            int distance = length;
+            for (int j = 0; j < text.length(); j++) {
+                long equals = mask(text.charAt(j));
+                long vertical = equals | negatives;
+                long horizontal = (((equals & positives) + positives) ^ positives) | equals;
+                long horizontalPositives = negatives | ~(horizontal | positives);
+                long horizontalNegatives = positives & horizontal;
+                if ((horizontalPositives & last) != 0) {
+                    score++;
+                } else if ((horizontalNegatives & last) != 0) {
+                    score--;
+                }
+                // a match can start at any position of text, so first row is zero
+                horizontalPositives <<= 1;
+                horizontalNegatives <<= 1;
+                positives = horizontalNegatives | ~(vertical | horizontalPositives);
+                negatives = horizontalPositives & vertical;
+                // and it can end at any position too
+                distance = Math.min(distance, score);
+            }
+            return distance;
+        }
+    }
+
+    private static int substringDistanceByRows(String pattern, String text) {
+        int[] previous = new int[text.length() + 1];
+        int[] current = new int[text.length() + 1];
+        // a match can start at any position of text, so first row is zero
+        for (int i = 1; i <= pattern.length(); i++) {
+            current[0] = i;
+            for (int j = 1; j <= text.length(); j++) {
+                int cost = pattern.charAt(i - 1) == text.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        // and it can end at any position too
+        int distance = pattern.length();
+        for (int d : previous) {
+            distance = Math.min(distance, d);
+        }
+        return distance;
+    }
+
+    /**
+     * 64 bits FNV-1a hash of given text, collisions are negligible unlike with hashCode.
+     * @param text
+     * @return hash.
+     */
+    public static long hash(String text) {
+        long hash = 0xcbf29ce484222325L;
+        if (text == null) return hash;
+        for (int i = 0; i < text.length(); i++) {
+            hash ^= text.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
@@ -9,8 +9,8 @@ import android.os.AsyncTask;
 import android.text.TextUtils;
 
 import java.io.IOException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 
 import io.github.nfdz.savedio.BuildConfig;
@@ -18,12 +18,14 @@ import io.github.nfdz.savedio.Callbacks;
 import io.github.nfdz.savedio.data.PreferencesUtils;
 import io.github.nfdz.savedio.data.RealmUtils;
 import io.github.nfdz.savedio.model.Bookmark;
+import io.github.nfdz.savedio.sync.PurgeUtils;
 import io.github.nfdz.savedio.sync.api.APIHelper;
 import io.github.nfdz.savedio.sync.api.BookmarkAPI;
 import io.github.nfdz.savedio.sync.api.CreateBookmarkResponse;
 import io.realm.Realm;
 import retrofit2.Call;
 import retrofit2.Response;
+import timber.log.Timber;
 
 /**
  * This class contains static methods to ease work with common application tasks.
@@ -46,41 +48,13 @@ public class TasksUtils {
         if (!TextUtils.isEmpty(PreferencesUtils.getUserAPIKey(context))) {
             // create bookmark in server
             new AsyncTask<Void, Void, Void>() {
-                private String bookmarkId;
-                private String bookmarkDate;
                 private String errorMsg;
                 private Throwable errorTh;
 
                 @Override
                 protected Void doInBackground(Void... params) {
-                    APIHelper helper = new APIHelper();
-                    String devKey = BuildConfig.SAVEDIO_API_DEV_KEY;
-                    String userKey = PreferencesUtils.getUserAPIKey(context);
-                    String list = bookmark.getListName();
-                    Call<CreateBookmarkResponse> createCall = helper.getAPI().createBookmark(devKey,
-                            userKey,
-                            bookmark.getUrl(),
-                            bookmark.getTitle(),
-                            TextUtils.isEmpty(list) ? null : list);
-
                     try {
-                        Response<CreateBookmarkResponse> createRes = createCall.execute();
-                        if (createRes.isSuccessful()) {
-                            String bmId = createRes.body().id;
-                            Call<BookmarkAPI> bmCall = helper.getAPI().retrieveSingleBookmark(
-                                    bmId,
-                                    devKey,
-                                    userKey);
-                            Response<BookmarkAPI> bmRes = bmCall.execute();
-                            if (bmRes.isSuccessful()) {
-                                bookmarkId = bmId;
-                                bookmarkDate = bmRes.body().date;
-                            } else {
-                                errorMsg = bmRes.raw().message();
-                            }
-                        } else {
-                            errorMsg = createRes.raw().message();
-                        }
+                        errorMsg = createInServer(context, new APIHelper(), bookmark);
                     } catch (IOException e) {
                         errorMsg = e.getMessage();
                         errorTh = e;
@@ -90,11 +64,7 @@ public class TasksUtils {
 
                 @Override
                 protected void onPostExecute(Void v) {
-                    if (!TextUtils.isEmpty(bookmarkId) &&
-                            !TextUtils.isEmpty(bookmarkDate)) {
-                        // set id and date
-                        bookmark.setId(bookmarkId);
-                        bookmark.setDate(bookmarkDate);
+                    if (errorMsg == null && errorTh == null) {
                         // store it in persistence
                         RealmUtils.addBookmark(realm, bookmark, callback);
                     } else {
@@ -103,50 +73,117 @@ public class TasksUtils {
                 }
             }.execute();
         } else {
-            // set id and date
-            SimpleDateFormat sdf = new SimpleDateFormat(Bookmark.DATE_FORMAT);
-            String currentDate = sdf.format(new Date());
-            bookmark.setId(UUID.randomUUID().toString());
-            bookmark.setDate(currentDate);
+            setLocalIdAndDate(bookmark);
             // store it in persistence
             RealmUtils.addBookmark(realm, bookmark, callback);
         }
     }
 
     /**
-     * This method removes a bookmark with given ID. It manages all related thing like remove in
-     * server or persistence.
+     * This method creates several bookmarks. It manages all related thing like send to server or
+     * store in persistence, that is done in a single transaction.
      * @param context
      * @param realm it has to be initialized.
-     * @param bookmarkId ID of the bookmark that will be removed.
-     * @param callback to be notified.
+     * @param bookmarks unmanaged objects with bookmark information (they should not have ID or
+     *                  date because it is the server that assigns it).
+     * @param callback to be notified, it will return if each bookmark was created (in the same
+     *                 order).
      */
-    public static void deleteBookmark(final Context context,
-                                      final Realm realm,
-                                      final String bookmarkId,
-                                      final Callbacks.OperationCallback<Bookmark> callback) {
+    public static void createBookmarks(final Context context,
+                                       final Realm realm,
+                                       final List<Bookmark> bookmarks,
+                                       final Callbacks.OperationCallback<List<Boolean>> callback) {
         if (!TextUtils.isEmpty(PreferencesUtils.getUserAPIKey(context))) {
-            // remove bookmark in server
+            // create bookmarks in server
             new AsyncTask<Void, Void, Void>() {
-                private boolean success;
-                private String errorMsg;
-                private Throwable errorTh;
+                private List<Bookmark> createdBookmarks = new ArrayList<>();
+                private boolean[] created = new boolean[bookmarks.size()];
 
                 @Override
                 protected Void doInBackground(Void... params) {
                     APIHelper helper = new APIHelper();
-                    String devKey = BuildConfig.SAVEDIO_API_DEV_KEY;
-                    String userKey = PreferencesUtils.getUserAPIKey(context);
-                    Call<Void> call = helper.getAPI().deleteBookmark(devKey,
-                            userKey,
-                            bookmarkId);
+                    for (int i = 0; i < bookmarks.size(); i++) {
+                        Bookmark bookmark = bookmarks.get(i);
+                        try {
+                            String errorMsg = createInServer(context, helper, bookmark);
+                            if (errorMsg == null) {
+                                createdBookmarks.add(bookmark);
+                                created[i] = true;
+                            } else {
+                                Timber.d("Bookmark creation error: " + errorMsg);
+                            }
+                        } catch (IOException e) {
+                            Timber.d(e, "Bookmark creation error.");
+                        }
+                    }
+                    return null;
+                }
 
-                    try {
-                        Response<Void> res = call.execute();
-                        success = res.isSuccessful();
-                        if (!success) {
-                            errorMsg = res.raw().message();
+                @Override
+                protected void onPostExecute(Void v) {
+                    // store them in persistence
+                    RealmUtils.addBookmarks(realm, createdBookmarks, new Callbacks.OperationCallback<List<Boolean>>() {
+                        @Override
+                        public void onSuccess(List<Boolean> added) {
+                            List<Boolean> results = new ArrayList<>(bookmarks.size());
+                            int addedIndex = 0;
+                            for (boolean wasCreated : created) {
+                                results.add(wasCreated && added.get(addedIndex++));
+                            }
+                            callback.onSuccess(results);
                         }
+                        @Override
+                        public void onError(String msg, Throwable th) {
+                            callback.onError(msg, th);
+                        }
+                    });
+                }
+            }.execute();
+        } else {
+            for (Bookmark bookmark : bookmarks) {
+                setLocalIdAndDate(bookmark);
+            }
+            // store them in persistence
+            RealmUtils.addBookmarks(realm, bookmarks, callback);
+        }
+    }
+
+    /**
+     * This method updates a bookmark with given ID. Server API cannot update bookmarks, so if
+     * title, URL or list changed and there is a user API key, it is created again in server and
+     * the old one will be deleted in server when it is purged (see PurgeUtils). Notes only exist
+     * in persistence, so changing them does not need network.
+     * @param context
+     * @param realm it has to be initialized.
+     * @param bookmarkId ID of the bookmark that will be updated.
+     * @param edited unmanaged object with the new title, URL, notes and list name.
+     * @param callback to be notified.
+     */
+    public static void editBookmark(final Context context,
+                                    final Realm realm,
+                                    final String bookmarkId,
+                                    final Bookmark edited,
+                                    final Callbacks.OperationCallback<Void> callback) {
+        Bookmark bookmark = realm.where(Bookmark.class)
+                .equalTo(Bookmark.FIELD_ID, bookmarkId)
+                .findFirst();
+        if (bookmark == null) {
+            callback.onError("There is no bookmark with that ID", null);
+            return;
+        }
+        boolean serverChanged = !TextUtils.equals(bookmark.getTitle(), edited.getTitle()) ||
+                !TextUtils.equals(bookmark.getUrl(), edited.getUrl()) ||
+                !RealmUtils.isSameList(bookmark.getListName(), edited.getListName());
+        if (serverChanged && !TextUtils.isEmpty(PreferencesUtils.getUserAPIKey(context))) {
+            // create bookmark again in server
+            new AsyncTask<Void, Void, Void>() {
+                private String errorMsg;
+                private Throwable errorTh;
+
+                @Override
+                protected Void doInBackground(Void... params) {
+                    try {
+                        errorMsg = createInServer(context, new APIHelper(), edited);
                     } catch (IOException e) {
                         errorMsg = e.getMessage();
                         errorTh = e;
@@ -156,15 +193,94 @@ public class TasksUtils {
 
                 @Override
                 protected void onPostExecute(Void v) {
-                    if (success) {
-                        RealmUtils.removeBookmark(realm, bookmarkId, callback);
+                    if (errorMsg == null && errorTh == null) {
+                        RealmUtils.updateBookmark(realm, bookmarkId, edited, new Callbacks.OperationCallback<Void>() {
+                            @Override
+                            public void onSuccess(Void result) {
+                                PurgeUtils.schedulePurge(context);
+                                callback.onSuccess(result);
+                            }
+                            @Override
+                            public void onError(String msg, Throwable th) {
+                                callback.onError(msg, th);
+                            }
+                        });
                     } else {
                         callback.onError(errorMsg, errorTh);
                     }
                 }
             }.execute();
         } else {
-            RealmUtils.removeBookmark(realm, bookmarkId, callback);
+            // keep ID and date
+            edited.setId(bookmarkId);
+            edited.setDate(bookmark.getDate());
+            RealmUtils.updateBookmark(realm, bookmarkId, edited, callback);
         }
     }
+
+    /**
+     * Creates given bookmark in server and sets the ID and date assigned by it. It works in a
+     * synchronous way.
+     * @return null if success or the error message if not.
+     * @throws IOException if there are network problems.
+     */
+    private static String createInServer(Context context,
+                                         APIHelper helper,
+                                         Bookmark bookmark) throws IOException {
+        String devKey = BuildConfig.SAVEDIO_API_DEV_KEY;
+        String userKey = PreferencesUtils.getUserAPIKey(context);
+        String list = bookmark.getListName();
+        Call<CreateBookmarkResponse> createCall = helper.getAPI().createBookmark(devKey,
+                userKey,
+                bookmark.getUrl(),
+                bookmark.getTitle(),
+                TextUtils.isEmpty(list) ? null : list);
+        Response<CreateBookmarkResponse> createRes = createCall.execute();
+        if (!createRes.isSuccessful()) return createRes.raw().message();
+        String bmId = createRes.body().id;
+        Call<BookmarkAPI> bmCall = helper.getAPI().retrieveSingleBookmark(
+                bmId,
+                devKey,
+                userKey);
+        Response<BookmarkAPI> bmRes = bmCall.execute();
+        if (!bmRes.isSuccessful()) return bmRes.raw().message();
+        String bmDate = bmRes.body().date;
+        if (TextUtils.isEmpty(bmId) || TextUtils.isEmpty(bmDate)) return "Server did not return ID or date.";
+        // set id and date
+        bookmark.setId(bmId);
+        bookmark.setDate(bmDate);
+        return null;
+    }
+
+    private static void setLocalIdAndDate(Bookmark bookmark) {
+        String currentDate = DateUtils.formatDate(System.currentTimeMillis());
+        bookmark.setId(UUID.randomUUID().toString());
+        bookmark.setDate(currentDate);
+    }
+
+    /**
+     * This method removes a bookmark with given ID. It is marked as deleted at once, so it can be
+     * restored, and it will be removed in server and persistence when it is purged (see
+     * PurgeUtils).
+     * @param context
+     * @param realm it has to be initialized.
+     * @param bookmarkId ID of the bookmark that will be removed.
+     * @param callback to be notified.
+     */
+    public static void deleteBookmark(final Context context,
+                                      final Realm realm,
+                                      final String bookmarkId,
+                                      final Callbacks.OperationCallback<Void> callback) {
+        RealmUtils.removeBookmark(realm, bookmarkId, new Callbacks.OperationCallback<Void>() {
+            @Override
+            public void onSuccess(Void result) {
+                PurgeUtils.schedulePurge(context);
+                callback.onSuccess(result);
+            }
+            @Override
+            public void onError(String msg, Throwable th) {
+                callback.onError(msg, th);
+            }
+        });
+    }
 }
@@ -30,6 +30,19 @@ public class URLUtils {
         }
     }
 
+    /**
+     * Extracts the host of given URL.
+     * @param rawUrl
+     * @return host or null if URL is not valid.
+     */
+    public static String getHost(String rawUrl) {
+        try {
+            return new URL(processURL(rawUrl)).getHost();
+        } catch (MalformedURLException e) {
+            return null;
+        }
+    }
+
     /**
      * Tries to infer the favicon path with given URL.
      * @param rawUrl path.
@@ -16,17 +16,14 @@ import android.widget.RemoteViewsService;
 import com.squareup.picasso.Picasso;
 
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
 
 import io.github.nfdz.savedio.R;
 import io.github.nfdz.savedio.data.PreferencesUtils;
+import io.github.nfdz.savedio.data.RealmProvider;
 import io.github.nfdz.savedio.model.Bookmark;
-import io.github.nfdz.savedio.model.BookmarkDateComparator;
-import io.github.nfdz.savedio.model.BookmarkDateLastComparator;
-import io.github.nfdz.savedio.model.BookmarkTitleComparator;
+import io.github.nfdz.savedio.model.BookmarkSort;
 import io.github.nfdz.savedio.utils.URLUtils;
 import io.realm.Realm;
 import io.realm.RealmResults;
@@ -38,36 +35,21 @@ public class FavoritesWidgetRemoteViewsService extends RemoteViewsService {
     private List<Bookmark> getData() {
         Realm realm = null;
         try {
-            Realm.init(this);
-            realm = Realm.getDefaultInstance();
-
-            // query data
-            RealmResults<Bookmark> result = realm.where(Bookmark.class)
-                    .equalTo(Bookmark.FIELD_FAVORITE, true)
-                    .findAll();
-
-            // get preferred sort
-            Comparator<Bookmark> comparator;
-            String sort = PreferencesUtils.getPreferredSort(this);
-            if (getString(R.string.pref_sort_date_last_key).equals(sort)) {
-                comparator = new BookmarkDateLastComparator();
-            } else if (getString(R.string.pref_sort_date_old_key).equals(sort)) {
-                comparator = new BookmarkDateComparator();
-            } else {
-                comparator = new BookmarkTitleComparator();
-            }
+            realm = RealmProvider.open();
 
-            List<Bookmark> data = new ArrayList<>();
-            for (Bookmark bm : result) {
-                data.add(realm.copyFromRealm(bm));
-            }
-            Collections.sort(data, comparator);
+            // query data with preferred sort
+            BookmarkSort sort = BookmarkSort.fromPreference(this, PreferencesUtils.getPreferredSort(this));
+            RealmResults<Bookmark> result = sort.findAllSorted(realm.where(Bookmark.class)
+                    .equalTo(Bookmark.FIELD_DELETED, Bookmark.NOT_DELETED)
+                    .equalTo(Bookmark.FIELD_FAVORITE, true));
+
+            List<Bookmark> data = realm.copyFromRealm(result);
             data = Collections.unmodifiableList(data);
             return data;
         } catch (Exception e) {
             Timber.e(e, "There was an error retrieving data for widget.");
         } finally {
-            if (realm != null) realm.close();
+            RealmProvider.close(realm);
         }
         return null;
     }
@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2017 Noe Fernandez
+ */
+package io.github.nfdz.savedio.data;
+
+import org.junit.BeforeClass;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.logging.Logger;
+
+import io.github.nfdz.savedio.model.BookmarkRows;
+
+/**
+ * Benchmark of typed searches over 50k bookmarks. It replays query sequences keystroke by
+ * keystroke (typing, deleting some characters and typing again) like main activity does with a
+ * search session, and compares it with filtering all bookmarks on every keystroke. It only
+ * reports times, so it is ignored by default and it has to be run on demand. Results of the
+ * session are checked by SearchSessionTest.
+ */
+@Ignore("Benchmark, it is run on demand")
+public class SearchSessionBenchmark {
+
+    private static final Logger LOGGER = Logger.getLogger(SearchSessionBenchmark.class.getName());
+
+    private static final int BOOKMARKS = 50000;
+    private static final int SEQUENCES = 100;
+    private static final int WARMUP_ROUNDS = 3;
+
+    private static BookmarkRows sContent;
+    private static List<String> sKeystrokes;
+
+    @BeforeClass
+    public static void setUp() {
+        SyntheticBookmarks bookmarks = new SyntheticBookmarks(7);
+        sContent = SearchSessionTest.createContent(bookmarks, BOOKMARKS);
+        sKeystrokes = SearchSessionTest.createKeystrokes(bookmarks, SEQUENCES);
+    }
+
+    private static long replayWithSession() {
+        SearchSession session = new SearchSession();
+        session.put("", sContent);
+        long start = System.nanoTime();
+        for (String filter : sKeystrokes) {
+            SearchSessionTest.search(session, sContent, filter);
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static long replayWithoutSession() {
+        long start = System.nanoTime();
+        for (String filter : sKeystrokes) {
+            if (!filter.isEmpty()) sContent.filter(filter);
+        }
+        return System.nanoTime() - start;
+    }
+
+    @Test
+    public void replayTypedSearches() {
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            replayWithSession();
+            replayWithoutSession();
+        }
+        long withSession = replayWithSession();
+        long withoutSession = replayWithoutSession();
+        LOGGER.info("Typed searches of " + BOOKMARKS + " bookmarks (" + sKeystrokes.size() + " keystrokes): " +
+                withSession / sKeystrokes.size() / 1000 + " us by keystroke with session, " +
+                withoutSession / sKeystrokes.size() / 1000 + " us without it.");
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2017 Noe Fernandez
+ */
+package io.github.nfdz.savedio.data;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.github.nfdz.savedio.model.BookmarkRows;
+import io.github.nfdz.savedio.utils.SearchUtils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class SearchSessionTest {
+
+    private static final int BOOKMARKS = 2000;
+    private static final int SEQUENCES = 20;
+    private static final int DELETED_CHARS = 3;
+
+    /**
+     * Creates given number of synthetic bookmarks.
+     */
+    static BookmarkRows createContent(SyntheticBookmarks bookmarks, int count) {
+        BookmarkRows.Builder builder = new BookmarkRows.Builder(count);
+        for (int i = 0; i < count; i++) {
+            String title = bookmarks.nextTitle();
+            String url = "https://" + bookmarks.nextHost() + "/" + bookmarks.nextWord();
+            builder.add(String.valueOf(i), title, url, SearchUtils.buildSearchText(title, url, null, null), false, 0, false);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Creates given number of typed searches (typing, deleting some characters, typing again and
+     * clearing the search), every search is the filter after each keystroke.
+     */
+    static List<String> createKeystrokes(SyntheticBookmarks bookmarks, int sequences) {
+        List<String> keystrokes = new ArrayList<>();
+        for (int i = 0; i < sequences; i++) {
+            String query = bookmarks.nextWord() + " " + bookmarks.nextWord();
+            for (int length = 1; length <= query.length(); length++) {
+                keystrokes.add(query.substring(0, length));
+            }
+            for (int length = query.length() - 1; length >= query.length() - DELETED_CHARS; length--) {
+                keystrokes.add(query.substring(0, length));
+            }
+            String retyped = query.substring(0, query.length() - DELETED_CHARS) + bookmarks.nextWord();
+            for (int length = query.length() - DELETED_CHARS + 1; length <= retyped.length(); length++) {
+                keystrokes.add(retyped.substring(0, length));
+            }
+            keystrokes.add("");
+        }
+        return keystrokes;
+    }
+
+    /**
+     * Searches given filter like main activity: cached results, then narrowing of the results of
+     * a contained search, then all bookmarks (main activity uses search index there).
+     */
+    static BookmarkRows search(SearchSession session, BookmarkRows content, String filter) {
+        BookmarkRows results = session.get(filter);
+        if (results != null) return results;
+        BookmarkRows source = session.getNarrowingSource(filter);
+        results = (source != null ? source : content).filter(filter);
+        session.put(filter, results);
+        return results;
+    }
+
+    @Test
+    public void sessionFindsSameResults() {
+        SyntheticBookmarks bookmarks = new SyntheticBookmarks(7);
+        BookmarkRows content = createContent(bookmarks, BOOKMARKS);
+        SearchSession session = new SearchSession();
+        session.put("", content);
+        for (String filter : createKeystrokes(bookmarks, SEQUENCES)) {
+            BookmarkRows results = search(session, content, filter);
+            BookmarkRows expected = filter.isEmpty() ? content : content.filter(filter);
+            assertEquals(filter, expected.size(), results.size());
+            for (int row = 0; row < results.size(); row++) {
+                assertEquals(filter, expected.getId(row), results.getId(row));
+            }
+        }
+    }
+
+    @Test
+    public void smallestContainedSearchNarrows() {
+        BookmarkRows content = createContent(new SyntheticBookmarks(7), BOOKMARKS);
+        BookmarkRows and = content.filter("and");
+        BookmarkRows andr = and.filter("andr");
+        SearchSession session = new SearchSession();
+        session.put("", content);
+        session.put("and", and);
+        session.put("andr", andr);
+        assertSame(andr, session.getNarrowingSource("android"));
+        assertNull(session.getNarrowingSource("recipes"));
+    }
+
+    @Test
+    public void shortSearchDoesNotNarrowArchiveSearch() {
+        BookmarkRows content = createContent(new SyntheticBookmarks(7), BOOKMARKS);
+        SearchSession session = new SearchSession();
+        session.put("", content);
+        session.put("an", content.filter("an"));
+        assertNull(session.getNarrowingSource("android"));
+    }
+}
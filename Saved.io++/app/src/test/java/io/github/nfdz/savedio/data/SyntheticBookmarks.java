@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2017 Noe Fernandez
+ */
+package io.github.nfdz.savedio.data;
+
+import java.util.Random;
+
+/**
+ * This class creates reproducible bookmark titles and hosts for benchmarks. Words are made of
+ * random syllables and they are picked with a skewed distribution, so a few words are very common
+ * like in real titles.
+ */
+class SyntheticBookmarks {
+
+    private static final String[] SYLLABLES = {
+            "an", "dro", "id", "ja", "va", "ko", "tlin", "re", "ci", "pe", "git", "hub", "da",
+            "ta", "ba", "se", "net", "work", "lo", "go", "vi", "deo", "mu", "sic", "news", "tech",
+            "blog", "ma", "ri", "po", "sa", "tu", "to", "ri", "al", "de", "sign", "cod", "ing"
+    };
+    private static final String[] TLDS = { ".com", ".org", ".net", ".io" };
+
+    private static final int VOCABULARY_SIZE = 5000;
+    private static final int MIN_TITLE_WORDS = 2;
+    private static final int MAX_TITLE_WORDS = 7;
+
+    private final Random mRandom;
+    private final String[] mVocabulary = new String[VOCABULARY_SIZE];
+
+    SyntheticBookmarks(long seed) {
+        mRandom = new Random(seed);
+        for (int i = 0; i < VOCABULARY_SIZE; i++) {
+            StringBuilder word = new StringBuilder();
+            int syllables = 2 + mRandom.nextInt(3);
+            for (int j = 0; j < syllables; j++) {
+                word.append(SYLLABLES[mRandom.nextInt(SYLLABLES.length)]);
+            }
+            mVocabulary[i] = word.toString();
+        }
+    }
+
+    /**
+     * Picks a word of the vocabulary, words with low index are more likely.
+     * @return word.
+     */
+    String nextWord() {
+        double skewed = Math.pow(mRandom.nextDouble(), 3);
+        return mVocabulary[(int) (skewed * VOCABULARY_SIZE)];
+    }
+
+    String nextTitle() {
+        int words = MIN_TITLE_WORDS + mRandom.nextInt(MAX_TITLE_WORDS - MIN_TITLE_WORDS + 1);
+        StringBuilder title = new StringBuilder(nextWord());
+        for (int i = 1; i < words; i++) {
+            title.append(' ').append(nextWord());
+        }
+        return title.toString();
+    }
+
+    String nextHost() {
+        return "www." + nextWord() + TLDS[mRandom.nextInt(TLDS.length)];
+    }
+
+    /**
+     * Creates the fuzzy text of a random bookmark like SearchUtils.buildFuzzyText does, without
+     * parsing an URL.
+     * @return fuzzy text.
+     */
+    String nextFuzzyText() {
+        return nextTitle() + "\n" + nextWord();
+    }
+
+    /**
+     * Replaces a random character of given text with other one.
+     * @param text
+     * @return text with a typo.
+     */
+    String withTypo(String text) {
+        int position = mRandom.nextInt(text.length());
+        char typo = (char) ('a' + mRandom.nextInt('z' - 'a' + 1));
+        return text.substring(0, position) + typo + text.substring(position + 1);
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2017 Noe Fernandez
+ */
+package io.github.nfdz.savedio.data;
+
+import org.junit.BeforeClass;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Benchmark of typo tolerant searches over the trigram index of 50k bookmarks. It runs in the
+ * JVM, so times are lower than in a device. It only reports the average time, so it is ignored
+ * by default and it has to be run on demand.
+ */
+@Ignore("Benchmark, it is run on demand")
+public class TrigramIndexBenchmark {
+
+    private static final Logger LOGGER = Logger.getLogger(TrigramIndexBenchmark.class.getName());
+
+    private static final int BOOKMARKS = 50000;
+    private static final int SEARCHES = 200;
+    private static final int WARMUP_ROUNDS = 3;
+
+    private static TrigramIndex sIndex;
+    private static List<String> sSearches;
+
+    @BeforeClass
+    public static void setUp() {
+        SyntheticBookmarks bookmarks = new SyntheticBookmarks(42);
+        sIndex = new TrigramIndex();
+        for (int ordinal = 0; ordinal < BOOKMARKS; ordinal++) {
+            sIndex.add(ordinal, bookmarks.nextFuzzyText());
+        }
+        sSearches = new ArrayList<>();
+        for (int i = 0; i < SEARCHES; i++) {
+            String search = bookmarks.nextWord();
+            if (i % 2 == 0) search += " " + bookmarks.nextWord();
+            sSearches.add(bookmarks.withTypo(search));
+        }
+    }
+
+    @Test
+    public void findSimilar() {
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            for (String search : sSearches) {
+                sIndex.findSimilar(search);
+            }
+        }
+        long start = System.nanoTime();
+        for (String search : sSearches) {
+            assertNotNull(sIndex.findSimilar(search));
+        }
+        long average = (System.nanoTime() - start) / SEARCHES;
+        LOGGER.info("Similar search of " + BOOKMARKS + " bookmarks: " + average / 1000 + " us on average.");
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2017 Noe Fernandez
+ */
+package io.github.nfdz.savedio.data;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TrigramIndexTest {
+
+    @Test
+    public void findSimilarToleratesTypos() {
+        TrigramIndex index = new TrigramIndex();
+        index.add(0, "android developers\ndeveloper.android");
+        index.add(1, "pasta recipes\nallrecipes");
+        Map<Integer, Integer> similar = index.findSimilar("androd");
+        assertEquals(1, similar.size());
+        assertEquals(1, (int) similar.get(0));
+        index.remove(0);
+        assertTrue(index.findSimilar("androd").isEmpty());
+    }
+
+    @Test
+    public void loadedIndexFindsSameResults() {
+        TrigramIndex index = new TrigramIndex();
+        index.add(0, "android developers\ndeveloper.android");
+        index.add(1, "pasta recipes\nallrecipes");
+        index.add(2, "android studio\ndeveloper.android");
+        index.remove(1);
+        // like search index does when it loads its file
+        TrigramIndex loaded = new TrigramIndex();
+        for (int ordinal = 0; ordinal < 3; ordinal++) {
+            if (index.getText(ordinal) != null) loaded.setText(ordinal, index.getText(ordinal));
+        }
+        for (Map.Entry<Long, PostingList> postings : index.getPostings().entrySet()) {
+            loaded.putPostings(postings.getKey(), postings.getValue());
+        }
+        assertEquals(index.findSimilar("androd"), loaded.findSimilar("androd"));
+        assertTrue(loaded.findSimilar("recipes").isEmpty());
+    }
+}